@@ -1,7 +1,14 @@
+import groovy.json.JsonSlurper
+import java.io.DataOutputStream
+import java.util.zip.CRC32
+
 plugins {
     alias(libs.plugins.android.application)
 }
 
+// Precomputed search indexes are generated here and packaged as an extra assets directory
+val cardIndexesDir = layout.buildDirectory.dir("generated/cardIndexes")
+
 android {
     namespace = "com.example.curiouscurators"
     compileSdk = 34
@@ -33,6 +40,91 @@ android {
     buildFeatures{
         viewBinding;true
     }
+
+    // Let unit tests run code that logs through android.util.Log
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+    }
+
+    sourceSets {
+        getByName("main") {
+            assets.srcDir(cardIndexesDir)
+        }
+    }
+}
+
+/**
+ * Mirrors Card.cleanName, so build-time keys match the keys searches are compared against.
+ * Both lower-case with Locale.ROOT, so neither the build machine's nor the device's locale matters;
+ * CardIndexes still spot-checks the keys against the parsed cards before using them.
+ */
+fun cleanCardKey(value: String): String {
+    return value.trim { Character.isWhitespace(it) }
+        .lowercase(java.util.Locale.ROOT)
+        .replace("'", "")
+        .replace("\"", "")
+        .replace(".", "")
+}
+
+/**
+ * Writes card_indexes.bin next to the assets: for the name, artist and set indexes, the cleaned
+ * key of every card and the stably sorted order of card ids, stamped with the CRC32 of cards.json.
+ * The layout is read by CardIndexes; bump both versions together.
+ */
+val generateCardIndexes by tasks.registering {
+    description = "Precomputes the card search indexes from cards.json"
+    val catalog = file("src/main/assets/cards.json")
+    inputs.files(catalog)
+    outputs.dir(cardIndexesDir)
+    doLast {
+        val outDir = cardIndexesDir.get().asFile
+        outDir.deleteRecursively()
+        outDir.mkdirs()
+        if (!catalog.exists()) {
+            logger.warn("No cards.json, card indexes will be sorted at runtime")
+            return@doLast
+        }
+        val bytes = catalog.readBytes()
+        val crc = CRC32()
+        crc.update(bytes)
+
+        // One card object per line, in the same order CardLoader assigns card ids
+        val slurper = JsonSlurper()
+        val cards = bytes.toString(Charsets.UTF_8).lineSequence()
+            .filter { it.isNotEmpty() }
+            .map { slurper.parseText(it) as Map<*, *> }
+            .toList()
+        // Read values the way Json.Reader does: a missing key is empty and a bare null is "null"
+        fun text(obj: Any?, key: String): String =
+            if (obj is Map<*, *> && obj.containsKey(key)) obj[key]?.toString() ?: "null" else ""
+        val fields = listOf<(Map<*, *>) -> String>(
+            { card -> text(card, "name") },
+            { card -> text(card, "illustrator").ifEmpty { "Unknown" } },
+            { card -> text(card["set"], "name") }
+        )
+
+        DataOutputStream(File(outDir, "card_indexes.bin").outputStream().buffered()).use { out ->
+            out.writeInt(0x43434931) // "CCI1"
+            out.writeInt(1)
+            out.writeLong(crc.value)
+            out.writeInt(cards.size)
+            for (field in fields) {
+                val keys = cards.map { cleanCardKey(field(it)) }
+                val distinct = keys.distinct().sorted()
+                val rank = HashMap<String, Int>()
+                distinct.forEachIndexed { i, key -> rank[key] = i }
+                out.writeInt(distinct.size)
+                distinct.forEach { out.writeUTF(it) }
+                keys.forEach { out.writeInt(rank.getValue(it)) }
+                // sortedWith is stable, so ties keep catalog order like the runtime sort
+                keys.indices.sortedWith(compareBy { keys[it] }).forEach { out.writeInt(it) }
+            }
+        }
+    }
+}
+
+tasks.named("preBuild") {
+    dependsOn(generateCardIndexes)
 }
 
 dependencies {
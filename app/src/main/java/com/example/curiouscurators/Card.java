@@ -1,44 +1,68 @@
 package com.example.curiouscurators;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 /**
  * Abstract base class representing a generic card.
  * This class provides shared attributes and functionality for all types of cards.
  */
 public abstract class Card {
-    // Whether the card dataset has been loaded
-    private static boolean initialized = false;
-    // Card objects indexed by global ID
-    private static final HashMap<String, Card> cardsById = new HashMap<>();
+    // Whether the card dataset has been loaded; written once by the loading thread
+    private static volatile boolean initialized = false;
+    // Whether a background load has been started
+    private static boolean loadStarted = false;
+    // Completes once the catalog is loaded and every lookup is available
+    private static final CompletableFuture<Void> ready = new CompletableFuture<>();
+    // Timings of the catalog load, filled in by initialize
+    private static final CatalogMetrics loadMetrics = new CatalogMetrics();
+    // Number of decoded cards kept in memory in lazy mode
+    private static final int LAZY_CACHE_SIZE = 256;
+    // Whether to decode cards on demand even on devices with plenty of memory
+    private static boolean lazyLoading = false;
+    // Whether to mirror the catalog and collection into SQLite and answer queries from it
+    private static boolean databaseEnabled = false;
+    // The SQLite mirror, set once it is built and in step with the collection
+    private static volatile CatalogDatabase database = null;
+    // Columns and sort indexes of the catalog, addressed by dense card id
+    private static CardStore store = CardStore.EMPTY;
+    // Card objects indexed by card id; empty in lazy mode
+    private static Card[] cards = new Card[0];
+    // On-demand card source used instead of cards in lazy mode
+    private static LazyCatalog lazyCatalog = null;
     // Set of owned cards
     private static final HashSet<String> cardsOwned = new HashSet<>();
-    // Sorted table of {name, globalId}
-    private static final ArrayList<String[]> cardsByName = new ArrayList<>();
-    // Sorted table of {illustrator, globalId}
-    private static final ArrayList<String[]> cardsByArtist = new ArrayList<>();
-    // Sorted table of {illustrator, globalId}
-    private static final ArrayList<String[]> cardsBySet= new ArrayList<>();
-    // Table of set logos by setId
-    private static final HashMap<String, Drawable> setLogos = new HashMap<>();
+    // Ownership changes made before the stored collection was read, applied on top of it; guarded by cardsOwned
+    private static final LinkedHashMap<String, Boolean> ownedBeforeLoad = new LinkedHashMap<>();
+    // Background writer persisting changes to cardsOwned
+    private static OwnedCardsWriter ownedWriter = null;
+    // Cards opened most recently, for ranking search results
+    private static final RecentViews recentViews = new RecentViews();
+    // Lazily decoded set logos by setId
+    private static SetLogoCache setLogos = null;
     // Table of energy symbols
     private static final HashMap<String, Drawable> energySymbols = new HashMap<>();
 
@@ -73,10 +97,29 @@ public abstract class Card {
         this.setSymbol = js.get("set").get("symbol").value();
     }
 
+    /**
+     * Constructs a Card object from fields collected by a streaming read.
+     * @param fields the raw field values of the card
+     */
+    protected Card(Fields fields) {
+        this.globalId = fields.globalId;
+        this.localId = fields.localId;
+        this.name = fields.name;
+        this.image = fields.image;
+        this.category = fields.category;
+        this.illustrator = orDefault(fields.illustrator, "Unknown");
+        this.rarity = orDefault(fields.rarity, "None");
+        this.setId = fields.setId;
+        this.setName = fields.setName;
+        this.setLogo = fields.setLogo;
+        this.setSymbol = fields.setSymbol;
+    }
+
     /**
      * Creates a {@code Card} object from a JSON string representation.
-     * This static method parses the provided JSON string to determine the type of card (e.g., Pokemon, Energy, Trainer)
-     * based on the "category" field. It then constructs and returns an instance of the appropriate subclass of {@code Card}.
+     * This static method streams over the provided JSON string and picks out the fields it knows,
+     * without building an intermediate {@code Json} tree. The "category" field determines which subclass
+     * of {@code Card} (e.g., Pokemon, Energy, Trainer) is constructed and returned.
      * If the category does not match any known card types, a {@code Json.ParsingException} is thrown.
      *
      * @param in The JSON string representing the card data.
@@ -84,71 +127,124 @@ public abstract class Card {
      * @throws Json.ParsingException If the JSON string cannot be parsed or the category is unknown.
      */
     static public Card fromString(String in) throws Json.ParsingException {
-        Json js = Json.fromString(in);
-        String category = js.get("category").value();
-        switch (category) {
+        return Card.fromReader(new Json.Reader(in));
+    }
+
+    /**
+     * Reads one card object from a streaming JSON reader.
+     * Unknown keys are skipped without being materialized.
+     *
+     * @param in reader positioned at the start of a card object
+     * @return A {@code Card} object of the subclass named by the "category" field.
+     * @throws Json.ParsingException If the JSON cannot be parsed or the category is unknown.
+     */
+    static Card fromReader(Json.Reader in) throws Json.ParsingException {
+        Fields fields = new Fields();
+        fields.read(in);
+        return Card.fromFields(fields);
+    }
+
+    /**
+     * Constructs the subclass of {@code Card} matching the category of the collected fields.
+     * @param fields the raw field values of the card
+     * @return A {@code Card} object corresponding to the fields.
+     * @throws Json.ParsingException If the category is unknown.
+     */
+    static Card fromFields(Fields fields) throws Json.ParsingException {
+        switch (fields.category) {
             case "Pokemon":
-                return new Pokemon(js);
+                return new Pokemon(fields);
             case "Energy":
-                return new Energy(js);
+                return new Energy(fields);
             case "Trainer":
-                return new Trainer(js);
+                return new Trainer(fields);
             default:
-                throw new Json.ParsingException(in);
+                throw new Json.ParsingException(fields.globalId + ": unknown category " + fields.category);
+        }
+    }
+
+    /**
+     * Replaces an empty value with a default, matching {@link Json#valueOrDefault(String)}.
+     * @param value the value read from the data
+     * @param _default the value to use if it is empty
+     * @return the value, or the default if the value is empty
+     */
+    static String orDefault(String value, String _default) {
+        if (value.isEmpty()) {
+            return _default;
+        } else {
+            return value;
         }
     }
 
     /**
      * Initializes the card database by loading card data from JSON.
+     * Blocks until the catalog is loaded, including when a background load is already running.
      * @param context the application context
      */
-    public static void initialize(Context context) {
+    public static synchronized void initialize(Context context) {
         if (!Card.initialized) {
+            CatalogMetrics metrics = Card.loadMetrics;
+            CatalogMetrics.Section phase;
+            long assetHash;
             try {
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(context.getAssets().open("cards.json"))
-                );
-                // Read and parse cards
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    Card c = Card.fromString(line);
-                    Card.cardsById.put(c.globalId, c);
-                    Card.cardsByName.add(new String[] {cleanName(c.name), c.globalId});
-                    Card.cardsByArtist.add(new String[] {cleanName(c.illustrator), c.globalId});
-                    Card.cardsBySet.add(new String[] {cleanName(c.setName), c.globalId});
-                }
-                // Sort cards by name
-                Card.cardsByName.sort(new Comparator<String[]>() {
-                    @Override
-                    public int compare(String[] s1, String[] s2) {
-                        return s1[0].compareTo(s2[0]);
+                // Prefer the binary snapshot of a previous parse of this exact asset
+                phase = metrics.begin("Catalog.hashAsset");
+                assetHash = CatalogSnapshot.hashAsset(context, "cards.json");
+                phase.end();
+                phase = metrics.begin("Catalog.openSnapshot");
+                CatalogSnapshot snapshot = CatalogSnapshot.open(context, assetHash);
+                phase.end();
+                boolean lazy = Card.useLazyLoading(context);
+                if (snapshot != null && lazy) {
+                    // Keep only the store columns resident, decode cards as they are asked for
+                    phase = metrics.begin("Catalog.decodeStore");
+                    Card.store = snapshot.store(null);
+                    Card.lazyCatalog = new LazyCatalog(snapshot, LAZY_CACHE_SIZE);
+                    phase.end(Card.store.size, snapshot.byteSize());
+                } else {
+                    CardLoader loaded = null;
+                    if (snapshot != null) {
+                        phase = metrics.begin("Catalog.decodeSnapshot");
+                        loaded = snapshot.decodeAll();
+                        phase.end(loaded.cards.length, snapshot.byteSize());
                     }
-                });
-                // Sort cards by artist
-                Card.cardsByArtist.sort(new Comparator<String[]>() {
-                    @Override
-                    public int compare(String[] s1, String[] s2) {
-                        return s1[0].compareTo(s2[0]);
+                    if (loaded == null) {
+                        // Parse cards on all cores, with the indexes precomputed at build time if present
+                        phase = metrics.begin("Catalog.readIndexes");
+                        CardIndexes indexes = CardIndexes.read(context, assetHash);
+                        phase.end(indexes == null ? 0 : indexes.cardCount, 0);
+                        phase = metrics.begin("Catalog.parse");
+                        CatalogMetrics.CountingInputStream in =
+                                new CatalogMetrics.CountingInputStream(context.getAssets().open("cards.json"));
+                        loaded = CardLoader.load(in, indexes);
+                        phase.end(loaded.cards.length, in.getCount());
+                        if (lazy) {
+                            // Write the snapshot now so the parsed cards can be dropped and decoded from it instead
+                            phase = metrics.begin("Catalog.writeSnapshot");
+                            CatalogSnapshot.write(context.getApplicationContext(), assetHash, loaded);
+                            snapshot = CatalogSnapshot.open(context, assetHash);
+                            phase.end();
+                        } else {
+                            Card.writeSnapshot(context.getApplicationContext(), assetHash, loaded);
+                        }
                     }
-                });
-                // Sort cards by set
-                Card.cardsByArtist.sort(new Comparator<String[]>() {
-                    @Override
-                    public int compare(String[] s1, String[] s2) {
-                        return s1[0].compareTo(s2[0]);
+                    Card.store = loaded.store;
+                    if (snapshot != null && lazy) {
+                        Card.lazyCatalog = new LazyCatalog(snapshot, LAZY_CACHE_SIZE);
+                    } else {
+                        // Without a usable snapshot every card stays resident, even in lazy mode
+                        Card.cards = loaded.cards;
                     }
-                });
+                }
             } catch (IOException | Json.ParsingException e) {
                 throw new RuntimeException(e);
             }
-            TypedArray setNames = context.getResources().obtainTypedArray(R.array.setNames);
-            TypedArray setLogos = context.getResources().obtainTypedArray(R.array.setLogos);
-            for (int i = 0; i < setNames.length(); i++) {
-                String name = setNames.getString(i);
-                int logoId = setLogos.getResourceId(i, -1);
-                Drawable logo = ContextCompat.getDrawable(context, logoId);
-                Card.setLogos.put(name, logo);
-            }
+            // Logos are only decoded when first shown
+            phase = metrics.begin("Catalog.setLogos");
+            Card.setLogos = new SetLogoCache(context.getApplicationContext());
+            phase.end();
+            phase = metrics.begin("Catalog.energySymbols");
             energySymbols.put("Colorless", ContextCompat.getDrawable(context, R.drawable.energy_colorless));
             energySymbols.put("Darkness", ContextCompat.getDrawable(context, R.drawable.energy_darkness));
             energySymbols.put("Dragon", ContextCompat.getDrawable(context, R.drawable.energy_dragon));
@@ -160,108 +256,377 @@ public abstract class Card {
             energySymbols.put("Metal", ContextCompat.getDrawable(context, R.drawable.energy_metal));
             energySymbols.put("Psychic", ContextCompat.getDrawable(context, R.drawable.energy_psychic));
             energySymbols.put("Water", ContextCompat.getDrawable(context, R.drawable.energy_water));
+            phase.end();
+            phase = metrics.begin("Catalog.readOwnedCards");
             readOwnedCards(context);
+            phase.end(Card.cardsOwned.size(), 0);
+            Log.i("Card", metrics.toString());
             Card.initialized = true;
-            setNames.recycle();
-            setLogos.recycle();
+            Card.ready.complete(null);
+            if (Card.databaseEnabled) {
+                Card.openDatabase(context.getApplicationContext(), assetHash);
+            }
         }
     }
 
+    /**
+     * Starts loading the card database on a background thread, once per process.
+     * Lookups return empty results until loading finishes; use {@link #whenReady(Runnable)}
+     * to be told when the catalog is available.
+     * @param context any context; only its application context is kept
+     */
+    public static synchronized void initializeAsync(Context context) {
+        if (Card.initialized || Card.loadStarted) {
+            return;
+        }
+        Card.loadStarted = true;
+        final Context appContext = context.getApplicationContext();
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Card.initialize(appContext);
+                } catch (final RuntimeException e) {
+                    Card.ready.completeExceptionally(e);
+                    // Fail as loudly as a synchronous load would
+                    new Handler(Looper.getMainLooper()).post(new Runnable() {
+                        @Override
+                        public void run() {
+                            throw e;
+                        }
+                    });
+                }
+            }
+        }, "catalog-loader");
+        loader.start();
+    }
+
+    /**
+     * Checks whether the card database has finished loading.
+     * @return true if every lookup is available
+     */
+    public static boolean isReady() {
+        return Card.initialized;
+    }
+
+    /**
+     * Returns a future that completes once the card database has finished loading.
+     * @return the readiness future
+     */
+    public static Future<Void> getReadyFuture() {
+        return Card.ready;
+    }
+
+    /**
+     * Runs a listener on the main thread once the card database has finished loading.
+     * If it already has and the caller is on the main thread, the listener runs immediately.
+     * @param listener the code to run
+     */
+    public static void whenReady(final Runnable listener) {
+        if (Card.initialized && Looper.myLooper() == Looper.getMainLooper()) {
+            listener.run();
+            return;
+        }
+        Card.ready.thenRun(new Runnable() {
+            @Override
+            public void run() {
+                new Handler(Looper.getMainLooper()).post(listener);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the per-phase timings of the catalog load.
+     * Phases are added as they finish, so the metrics are complete once the catalog is ready.
+     * @return the load metrics
+     */
+    public static CatalogMetrics getLoadMetrics() {
+        return Card.loadMetrics;
+    }
+
+    /**
+     * Decodes cards on demand from the catalog snapshot instead of keeping all of them in memory.
+     * Must be called before {@link #initialize(Context)}; low-RAM devices use lazy loading regardless.
+     * @param lazy whether to load cards lazily
+     */
+    public static void setLazyLoading(boolean lazy) {
+        Card.lazyLoading = lazy;
+    }
+
+    /**
+     * Mirrors the catalog and collection into SQLite, and answers search filters and the owned
+     * list from it once it is built. Must be called before {@link #initialize(Context)}.
+     * @param enabled whether to use the database
+     */
+    public static void setDatabaseEnabled(boolean enabled) {
+        Card.databaseEnabled = enabled;
+    }
+
+    /**
+     * Retrieves the SQLite mirror of the catalog.
+     * @return the database, or null if it is disabled or still being built
+     */
+    static CatalogDatabase getDatabase() {
+        return Card.database;
+    }
+
+    /**
+     * Builds or refreshes the SQLite mirror on a background thread, then starts using it.
+     * @param context the application context
+     * @param assetHash hash of the asset the catalog was loaded from
+     */
+    private static void openDatabase(final Context context, final long assetHash) {
+        Thread builder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final CatalogDatabase db = new CatalogDatabase(context);
+                if (!db.isCurrent(assetHash)) {
+                    db.rebuild(assetHash, Card.store);
+                }
+                // Only answer from the database once its owned table has caught up with the collection
+                Card.ownedWriter.attachDatabase(db, new Runnable() {
+                    @Override
+                    public void run() {
+                        Card.database = db;
+                    }
+                });
+            }
+        }, "catalog-database");
+        builder.setPriority(Thread.MIN_PRIORITY);
+        builder.start();
+    }
+
+    /**
+     * Decides whether this process should decode cards on demand.
+     * @param context the application context
+     * @return true if lazy loading was requested or the device is low on memory
+     */
+    private static boolean useLazyLoading(Context context) {
+        if (Card.lazyLoading) {
+            return true;
+        }
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return activityManager != null && activityManager.isLowRamDevice();
+    }
+
+    /**
+     * Saves a snapshot of a freshly parsed catalog on a background thread,
+     * so the next launch can skip parsing.
+     * @param context the application context
+     * @param assetHash hash of the asset the catalog was parsed from
+     * @param loaded the parsed catalog
+     */
+    private static void writeSnapshot(Context context, long assetHash, CardLoader loaded) {
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                CatalogSnapshot.write(context, assetHash, loaded);
+            }
+        }, "catalog-snapshot");
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
     /**
      * Check if a card is owned
      * @param globalId the globalId of the card to check
      * @return Whether the card is owned
      */
     public static boolean isCardOwned(String globalId) {
-        return Card.cardsOwned.contains(globalId);
+        // Search results are ranked by ownership on a background thread
+        synchronized (Card.cardsOwned) {
+            if (Card.ownedWriter == null) {
+                // Only changes made during the load are known before the collection is read
+                return Boolean.TRUE.equals(Card.ownedBeforeLoad.get(globalId));
+            }
+            return Card.cardsOwned.contains(globalId);
+        }
     }
 
     /**
      * Modify the ownership status of a card
+     * The change takes effect immediately and is written to the ownership journal in the background.
+     * A change made while the catalog is still loading is kept and applied on top of the stored
+     * collection once it has been read, so a tap during the load is not lost.
      * @param globalId the globalId of the card to modify
      */
     public static void setCardOwned(Context context, String globalId, boolean state) {
-        if (state) {
-            Card.cardsOwned.add(globalId);
-        } else {
-            Card.cardsOwned.remove(globalId);
+        OwnedCardsWriter writer;
+        synchronized (Card.cardsOwned) {
+            writer = Card.ownedWriter;
+            if (writer == null) {
+                Card.ownedBeforeLoad.put(globalId, state);
+                return;
+            }
+            if (state) {
+                Card.cardsOwned.add(globalId);
+            } else {
+                Card.cardsOwned.remove(globalId);
+            }
+        }
+        writer.set(globalId, state);
+    }
+
+    /**
+     * Records that a card was opened, so it ranks higher in search results for a while.
+     * @param globalId the globalId of the opened card
+     */
+    public static void recordView(String globalId) {
+        int id = Card.store.idOf(globalId);
+        if (id >= 0) {
+            Card.recentViews.record(id);
+        }
+    }
+
+    /**
+     * Gets the cards opened most recently.
+     * @return the view history
+     */
+    static RecentViews getRecentViews() {
+        return Card.recentViews;
+    }
+
+    /**
+     * Writes pending ownership changes right away, on the background writer.
+     * Call when the app may be about to stop, such as from {@code onPause}.
+     */
+    public static void flushOwnedCards() {
+        if (Card.ownedWriter != null) {
+            Card.ownedWriter.flush();
         }
-        Card.writeOwnedCards(context);
+    }
+
+    /**
+     * Receives the owned cards listed by {@link #loadOwnedCards(OwnedCardsListener)}.
+     */
+    public interface OwnedCardsListener {
+        /**
+         * Called on the main thread with the owned cards.
+         * @param cards the owned cards, in name order
+         */
+        void onOwnedCards(ArrayList<Card> cards);
+    }
+
+    /**
+     * Lists the owned cards on a background thread once the catalog has loaded, and hands them to a
+     * listener on the main thread. Use this from the UI, since listing may query the database.
+     * @param listener the code to run with the owned cards
+     */
+    public static void loadOwnedCards(final OwnedCardsListener listener) {
+        Card.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                Thread lister = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        final ArrayList<Card> cards = Card.getOwnedCards();
+                        new Handler(Looper.getMainLooper()).post(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onOwnedCards(cards);
+                            }
+                        });
+                    }
+                }, "owned-cards");
+                lister.start();
+            }
+        });
     }
 
     /**
      * Get all owned cards
-     * @return ArrayList of owned cards
+     * May query the database, so call it off the main thread; see {@link #loadOwnedCards}.
+     * @return ArrayList of owned cards, in name order whether or not queued changes have been written
      */
     public static ArrayList<Card> getOwnedCards() {
         ArrayList<Card> cards = new ArrayList<>();
-        for (String globalId : cardsOwned) {
-            cards.add(Card.getCardById(globalId));
+        if (!Card.initialized) {
+            return cards;
         }
-        return cards;
-    }
-
-    private static void writeOwnedCards(Context context) {
-        try {
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(context.openFileOutput("owned.csv", Context.MODE_PRIVATE));
-            String data = String.join(",", cardsOwned);
-            System.out.println(data);
-            outputStreamWriter.write(data);
-            outputStreamWriter.flush();
-            outputStreamWriter.close();
+        ArrayList<Integer> ids = new ArrayList<>();
+        CatalogDatabase db = Card.database;
+        if (db != null) {
+            // The database has everything written so far; changes still queued are laid over it
+            Map<String, Boolean> unwritten = Card.ownedWriter.unwritten();
+            for (int id : db.ownedIds()) {
+                if (!unwritten.containsKey(Card.store.globalIds[id])) {
+                    ids.add(id);
+                }
+            }
+            for (Map.Entry<String, Boolean> change : unwritten.entrySet()) {
+                int id = Card.store.idOf(change.getKey());
+                if (change.getValue() && id >= 0) {
+                    ids.add(id);
+                }
+            }
+        } else {
+            synchronized (Card.cardsOwned) {
+                for (String globalId : cardsOwned) {
+                    int id = Card.store.idOf(globalId);
+                    if (id >= 0) {
+                        ids.add(id);
+                    }
+                }
+            }
         }
-        catch (IOException e) {
-            Log.e("Exception", "File write failed: " + e.toString());
+        // Queued additions and the unordered set are put in the name order of the database query
+        final String[] nameKeys = Card.store.nameKeys;
+        Collections.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byName = nameKeys[a].compareTo(nameKeys[b]);
+                return byName != 0 ? byName : Integer.compare(a, b);
+            }
+        });
+        for (int id : ids) {
+            cards.add(Card.getCard(id));
         }
+        return cards;
     }
 
     /**
-     * Reads the list of owned cards from a CSV file and updates the `cardsOwned` collection.
-     * This method reads a CSV file named "owned.csv" from the application's internal storage.
-     * It processes the file line by line, extracts card IDs, and updates the `cardsOwned` collection
-     * by adding only those IDs that exist in the `cardsById` map. Any errors encountered during file
-     * reading are caught and logged.
+     * Reads the set of owned cards and updates the `cardsOwned` collection.
+     * The last snapshot in "owned.csv" is read from the application's internal storage and the
+     * ownership journal is replayed on top of it. Only IDs that exist in the card store are kept.
+     * Changes made with {@link #setCardOwned} while the catalog was loading are applied last.
+     * Any errors encountered during file reading are logged and leave the files untouched.
      *
      * @param context The context from which to access the application's internal file storage.
      */
     public static void readOwnedCards(Context context) {
-        try {
-            InputStream inputStream = context.openFileInput("owned.csv");
-            if ( inputStream != null ) {
-                InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-                BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-                String receiveString = "";
-                StringBuilder stringBuilder = new StringBuilder();
-
-                while ( (receiveString = bufferedReader.readLine()) != null ) {
-                    stringBuilder.append("\n").append(receiveString);
+        OwnedCardsJournal journal = new OwnedCardsJournal(context.getApplicationContext());
+        HashSet<String> stored = journal.replay();
+        OwnedCardsWriter writer = new OwnedCardsWriter(journal, stored);
+        synchronized (Card.cardsOwned) {
+            cardsOwned.clear();
+            for (String id : stored) {
+                if (Card.exists(id)) {
+                    cardsOwned.add(id);
                 }
-
-                inputStream.close();
-                cardsOwned.clear();
-                String in = stringBuilder.toString().strip();
-                System.out.println(in);
-                String[] data = in.split(",");
-                for (String id : data) {
-                    if (cardsById.containsKey(id)) {
-                        cardsOwned.add(id);
-                    }
+            }
+            for (Map.Entry<String, Boolean> change : Card.ownedBeforeLoad.entrySet()) {
+                if (change.getValue()) {
+                    cardsOwned.add(change.getKey());
+                } else {
+                    cardsOwned.remove(change.getKey());
                 }
+                writer.set(change.getKey(), change.getValue());
             }
-        }
-        catch (Exception e) {
-            System.out.println("Failed to read owned.csv");
+            Card.ownedBeforeLoad.clear();
+            // Publishing the writer ends the load for setCardOwned, under the same lock
+            Card.ownedWriter = writer;
         }
     }
 
     /**
      * Cleans a card name by removing punctuation and converting to lower case.
+     * Lower-casing ignores the device locale, so keys match the ones precomputed at build time.
      * @param in the original card name
      * @return the cleaned card name
      */
     public static String cleanName(String in) {
         return in.strip()
-                .toLowerCase()
+                .toLowerCase(Locale.ROOT)
                 .replaceAll("'", "")
                 .replaceAll("\"", "")
                 .replaceAll("\\.", "");
@@ -269,88 +634,161 @@ public abstract class Card {
 
     /**
      * Retrieves a card by its ID.
+     * In lazy mode the card is decoded on first use and cached.
      * @param id the global ID of the card
-     * @return the Card object
+     * @return the Card object, or null if it does not exist or the catalog is still loading
      */
     public static Card getCardById(String id) {
         if (!Card.initialized) {
-            throw new RuntimeException("Cards not initialized. Do `Card.initialize()` first.");
+            return null;
+        }
+        int cardId = Card.store.idOf(id);
+        if (cardId < 0) {
+            return null;
         }
-        return cardsById.get(id);
+        return Card.getCard(cardId);
     }
 
     /**
-     * Retrieves the logo associated with a set ID.
-     * @param id the set ID
-     * @return the Drawable logo
+     * Retrieves a card by its dense id in the card store.
+     * In lazy mode the card is decoded on first use and cached.
+     * @param id the card id
+     * @return the Card object, or null if the catalog is still loading
      */
-    public static Drawable getLogoById(String id) {
+    public static Card getCard(int id) {
         if (!Card.initialized) {
-            throw new RuntimeException("Cards not initialized. Do `Card.initialize()` first.");
+            return null;
         }
-        Drawable d = setLogos.get(id);
-        if (d == null) {
-            return setLogos.get("base1");
-        } else {
-            return d;
+        if (Card.lazyCatalog != null) {
+            return Card.lazyCatalog.get(id);
         }
+        return Card.cards[id];
     }
 
     /**
-     * Retrieves an energy symbol.
-     * @param id the energy symbol name
-     * @return the Drawable energy symbol
+     * Retrieves the free text of a card, for indexing. In lazy mode the text is read straight
+     * from the snapshot, so no card is built and the cache of recent cards is left alone.
+     * @param id the card id
+     * @return the effects, attacks and descriptions of the card, or an empty string while the
+     *         catalog is still loading
      */
-    public static Drawable getEnergySymbol(String id) {
+    static String getBodyText(int id) {
         if (!Card.initialized) {
-            throw new RuntimeException("Cards not initialized. Do `Card.initialize()` first.");
+            return "";
         }
-        Drawable d = energySymbols.get(id);
-        if (d == null) {
-            return energySymbols.get("Colorless");
-        } else {
-            return d;
+        if (Card.lazyCatalog != null) {
+            return Card.lazyCatalog.bodyText(id);
         }
+        return CatalogDatabase.bodyText(Card.cards[id]);
     }
 
     /**
-     * Retrieves a list of cards sorted by name.
-     * @return the list of cards
+     * Checks whether a card exists, without materializing it.
+     * @param id the global ID of the card
+     * @return true if the catalog contains the card
+     */
+    private static boolean exists(String id) {
+        return Card.store.idOf(id) >= 0;
+    }
+
+    /**
+     * Retrieves the number of cards in the catalog.
+     * @return the card count
      */
-    public static ArrayList<String[]> getCardsByName() {
+    public static int getCardCount() {
         if (!Card.initialized) {
-            throw new RuntimeException("Cards not initialized. Do `Card.initialize()` first.");
+            return 0;
         }
-        return cardsByName;
+        return Card.store.size;
     }
 
     /**
-     * Retrieves a list of cards sorted by artist.
-     * @return the list of cards
+     * Retrieves the column store of the catalog, which holds the listing fields of every card
+     * and the name, artist and set sort indexes.
+     * @return the store, which is empty while the catalog is still loading
      */
-    public static ArrayList<String[]> getCardsByArtist() {
+    public static CardStore getStore() {
         if (!Card.initialized) {
-            throw new RuntimeException("Cards not initialized. Do `Card.initialize()` first.");
+            return CardStore.EMPTY;
         }
-        return cardsByArtist;
+        return Card.store;
     }
 
     /**
-     * Retrieves a list of cards sorted by set.
-     * @return the list of cards
+     * Retrieves the facet bitmaps used by {@link CardQuery}, building them the first time.
+     * Does not wait for the catalog load, which holds the lock of {@link #initialize}.
+     * @return the facets, which cover no cards while the catalog is still loading
+     */
+    public static CardFacets getFacets() {
+        return Card.getStore().facets();
+    }
+
+    /**
+     * Retrieves the logo associated with a set ID.
+     * @param id the set ID
+     * @return the Drawable logo
+     */
+    public static Drawable getLogoById(String id) {
+        if (!Card.initialized) {
+            return null;
+        }
+        return setLogos.get(id);
+    }
+
+    /**
+     * Shows the logo associated with a set ID in an image view.
+     * The logo is decoded off the main thread unless it is already cached.
+     * @param view the view to show the logo in
+     * @param id the set ID
+     */
+    public static void loadLogoInto(ImageView view, String id) {
+        if (!Card.initialized) {
+            view.setImageDrawable(null);
+            return;
+        }
+        setLogos.loadInto(view, id);
+    }
+
+    /**
+     * Releases cached images when the system asks the app to trim its memory.
+     * @param level the trim level passed to {@code onTrimMemory}
+     */
+    public static void trimMemory(int level) {
+        if (Card.initialized && level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            setLogos.clear();
+        }
+    }
+
+    /**
+     * Retrieves an energy symbol.
+     * @param id the energy symbol name
+     * @return the Drawable energy symbol
      */
-    public static ArrayList<String[]> getCardsBySet() {
+    public static Drawable getEnergySymbol(String id) {
         if (!Card.initialized) {
-            throw new RuntimeException("Cards not initialized. Do `Card.initialize()` first.");
+            return null;
+        }
+        Drawable d = energySymbols.get(id);
+        if (d == null) {
+            return energySymbols.get("Colorless");
+        } else {
+            return d;
         }
-        return cardsBySet;
     }
 
+    /**
+     * Retrieves every card in the catalog.
+     * In lazy mode this decodes the whole catalog, so prefer {@link #getCardCount()} and id lookups.
+     * @return the list of cards
+     */
     public static ArrayList<Card> getAllCards() {
         if (!Card.initialized) {
-            throw new RuntimeException("Cards not initialized.");
+            return new ArrayList<>();
+        }
+        if (Card.lazyCatalog != null) {
+            return Card.lazyCatalog.getAll();
         }
-        return new ArrayList<>(cardsById.values());
+        return new ArrayList<>(Arrays.asList(Card.cards));
     }
 
     @NonNull
@@ -376,6 +814,16 @@ public abstract class Card {
             this.type = js.get("energyType").value();
         }
 
+        /**
+         * Constructs an Energy card from fields collected by a streaming read.
+         * @param fields the raw field values of the card
+         */
+        Energy(Fields fields) {
+            super(fields);
+            this.effect = fields.effect;
+            this.type = fields.energyType;
+        }
+
         @NonNull
         public String toString() {
             return this.type + " " + this.effect;
@@ -393,7 +841,7 @@ public abstract class Card {
                 itemName,
                 itemEffect,
                 regulationMark;
-        private final int hp, level, retreat;
+        final int hp, level, retreat;
         ArrayList<String> types;
         ArrayList<Attack> attacks;
 
@@ -426,6 +874,26 @@ public abstract class Card {
             }
         }
 
+        /**
+         * Constructs a Pokemon card from fields collected by a streaming read.
+         * @param fields the raw field values of the card
+         */
+        Pokemon(Fields fields) {
+            super(fields);
+            this.evolveFrom = orDefault(fields.evolveFrom, "None");
+            this.description = fields.description;
+            this.stage = fields.stage;
+            this.suffix = fields.suffix;
+            this.itemName = fields.itemName;
+            this.itemEffect = fields.itemEffect;
+            this.regulationMark = orDefault(fields.regulationMark, "N/A");
+            this.hp = Integer.parseInt(orDefault(fields.hp, "-1"));
+            this.level = Integer.parseInt(orDefault(fields.level, "-1"));
+            this.retreat = Integer.parseInt(orDefault(fields.retreat, "-1"));
+            this.types = fields.types;
+            this.attacks = fields.attacks;
+        }
+
         @NonNull
         public String toString() {
             return this.hp + " " + this.types;
@@ -452,6 +920,45 @@ public abstract class Card {
                 this.effect = js.get("effect").valueOrDefault("");
                 this.damage = js.get("damage").valueOrDefault("0");
             }
+
+            /**
+             * Constructs an Attack from already decoded values.
+             * @param cost the energy types required to use the attack
+             * @param name the attack name
+             * @param effect the attack effect text
+             * @param damage the damage dealt
+             */
+            Attack(ArrayList<String> cost, String name, String effect, String damage) {
+                this.cost = cost;
+                this.name = name;
+                this.effect = effect;
+                this.damage = damage;
+            }
+
+            /**
+             * Reads an Attack from a streaming reader positioned at the attack object.
+             * @param in the reader to consume the attack from
+             * @throws Json.ParsingException if the attack is malformed
+             */
+            Attack(Json.Reader in) throws Json.ParsingException {
+                ArrayList<String> cost = new ArrayList<String>();
+                String name = "", effect = "", damage = "";
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "cost": in.nextStrings(cost); break;
+                        case "name": name = in.nextString(); break;
+                        case "effect": effect = in.nextString(); break;
+                        case "damage": damage = in.nextString(); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+                this.cost = cost;
+                this.name = name;
+                this.effect = effect;
+                this.damage = orDefault(damage, "0");
+            }
         }
     }
 
@@ -474,9 +981,144 @@ public abstract class Card {
             this.type = js.get("trainerType").value();
         }
 
+        /**
+         * Constructs a Trainer card from fields collected by a streaming read.
+         * @param fields the raw field values of the card
+         */
+        Trainer(Fields fields) {
+            super(fields);
+            this.effect = fields.effect;
+            this.type = fields.trainerType;
+        }
+
         @NonNull
         public String toString() {
             return this.type + " " + this.effect;
         }
     }
+
+    /**
+     * Raw field values of a single card, collected while streaming over its JSON
+     * so the final {@code Card} can be constructed once the category is known.
+     * Missing fields stay empty, like a missing key in a {@code Json} tree.
+     */
+    static class Fields {
+        String globalId = "",
+                localId = "",
+                name = "",
+                image = "",
+                category = "",
+                illustrator = "",
+                rarity = "",
+                setId = "",
+                setName = "",
+                setLogo = "",
+                setSymbol = "",
+                effect = "",
+                energyType = "",
+                trainerType = "",
+                evolveFrom = "",
+                description = "",
+                stage = "",
+                suffix = "",
+                itemName = "",
+                itemEffect = "",
+                regulationMark = "",
+                hp = "",
+                level = "",
+                retreat = "";
+        final ArrayList<String> types = new ArrayList<>();
+        final ArrayList<Pokemon.Attack> attacks = new ArrayList<>();
+
+        /**
+         * Reads a whole card object, keeping known keys and skipping the rest.
+         * @param in reader positioned at the start of the card object
+         * @throws Json.ParsingException if the card is malformed
+         */
+        void read(Json.Reader in) throws Json.ParsingException {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": this.globalId = in.nextString(); break;
+                    case "localId": this.localId = in.nextString(); break;
+                    case "name": this.name = in.nextString(); break;
+                    case "image": this.image = in.nextString(); break;
+                    case "category": this.category = in.nextString(); break;
+                    case "illustrator": this.illustrator = in.nextString(); break;
+                    case "rarity": this.rarity = in.nextString(); break;
+                    case "set": this.readSet(in); break;
+                    case "effect": this.effect = in.nextString(); break;
+                    case "energyType": this.energyType = in.nextString(); break;
+                    case "trainerType": this.trainerType = in.nextString(); break;
+                    case "evolveFrom": this.evolveFrom = in.nextString(); break;
+                    case "description": this.description = in.nextString(); break;
+                    case "stage": this.stage = in.nextString(); break;
+                    case "suffix": this.suffix = in.nextString(); break;
+                    case "item": this.readItem(in); break;
+                    case "regulationMark": this.regulationMark = in.nextString(); break;
+                    case "hp": this.hp = in.nextString(); break;
+                    case "level": this.level = in.nextString(); break;
+                    case "retreat": this.retreat = in.nextString(); break;
+                    case "types": in.nextStrings(this.types); break;
+                    case "attacks":
+                        if (in.peek() != Json.Reader.Token.BeginArray) {
+                            in.skipValue();
+                            break;
+                        }
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            this.attacks.add(new Pokemon.Attack(in));
+                        }
+                        in.endArray();
+                        break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+
+        /**
+         * Reads the nested "set" object.
+         * @param in reader positioned at the set object
+         * @throws Json.ParsingException if the object is malformed
+         */
+        private void readSet(Json.Reader in) throws Json.ParsingException {
+            if (in.peek() != Json.Reader.Token.BeginObject) {
+                in.skipValue();
+                return;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": this.setId = in.nextString(); break;
+                    case "name": this.setName = in.nextString(); break;
+                    case "logo": this.setLogo = in.nextString(); break;
+                    case "symbol": this.setSymbol = in.nextString(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+
+        /**
+         * Reads the nested "item" object of a Pokemon.
+         * @param in reader positioned at the item object
+         * @throws Json.ParsingException if the object is malformed
+         */
+        private void readItem(Json.Reader in) throws Json.ParsingException {
+            if (in.peek() != Json.Reader.Token.BeginObject) {
+                in.skipValue();
+                return;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name": this.itemName = in.nextString(); break;
+                    case "effect": this.itemEffect = in.nextString(); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+    }
 }
@@ -0,0 +1,425 @@
+package com.example.curiouscurators;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed set of card ids, in the style of a Roaring bitmap.
+ * Ids are split by their high 16 bits into chunks of 65536; each non-empty chunk is stored either as
+ * a sorted array of its low 16 bits, while it holds at most 4096 ids, or as a 1024-word bitset once
+ * that becomes smaller. Set operations work chunk by chunk, so intersecting a sparse facet with a
+ * dense one costs about as much as the sparse one has ids.
+ */
+final class CardBitmap {
+    // Set with no ids
+    static final CardBitmap EMPTY = new CardBitmap(new char[0], new Object[0], new int[0]);
+    // Largest chunk kept as a sorted array; beyond this a bitset is smaller
+    private static final int ARRAY_MAX = 4096;
+    // Words in a bitset chunk
+    private static final int WORDS = 1024;
+
+    // High 16 bits of each chunk, ascending
+    private final char[] keys;
+    // Each chunk: a sorted char[] of low bits, or a long[WORDS] bitset
+    private final Object[] chunks;
+    // Number of ids in each chunk
+    private final int[] cardinalities;
+
+    private CardBitmap(char[] keys, Object[] chunks, int[] cardinalities) {
+        this.keys = keys;
+        this.chunks = chunks;
+        this.cardinalities = cardinalities;
+    }
+
+    /**
+     * Builds the set of every id below a bound.
+     * @param size the number of ids
+     * @return the set {@code [0, size)}
+     */
+    static CardBitmap range(int size) {
+        Builder builder = new Builder();
+        for (int id = 0; id < size; id++) {
+            builder.add(id);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Checks whether an id is in the set.
+     * @param id a card id
+     * @return true if the set holds it
+     */
+    boolean contains(int id) {
+        int index = Arrays.binarySearch(this.keys, (char) (id >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        Object chunk = this.chunks[index];
+        char low = (char) id;
+        if (chunk instanceof char[]) {
+            return Arrays.binarySearch((char[]) chunk, low) >= 0;
+        }
+        return (((long[]) chunk)[low >>> 6] & (1L << low)) != 0;
+    }
+
+    /**
+     * Counts the ids in the set.
+     * @return the cardinality
+     */
+    int cardinality() {
+        int total = 0;
+        for (int cardinality : this.cardinalities) {
+            total += cardinality;
+        }
+        return total;
+    }
+
+    /**
+     * Checks whether the set is empty.
+     * @return true if it holds no ids
+     */
+    boolean isEmpty() {
+        return this.keys.length == 0;
+    }
+
+    /**
+     * Lists every id in the set.
+     * @return the ids, ascending
+     */
+    int[] toArray() {
+        return this.page(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lists one page of the set without expanding the rest.
+     * @param offset number of smallest ids to skip
+     * @param limit largest number of ids to return
+     * @return up to limit ids, ascending
+     */
+    int[] page(int offset, int limit) {
+        int size = (int) Math.max(0, Math.min((long) limit, (long) this.cardinality() - offset));
+        int[] out = new int[size];
+        int written = 0;
+        int skip = offset;
+        for (int i = 0; i < this.keys.length && written < size; i++) {
+            // Whole chunks before the page are skipped by their counts
+            if (skip >= this.cardinalities[i]) {
+                skip -= this.cardinalities[i];
+                continue;
+            }
+            int high = this.keys[i] << 16;
+            Object chunk = this.chunks[i];
+            if (chunk instanceof char[]) {
+                char[] values = (char[]) chunk;
+                for (int j = skip; j < values.length && written < size; j++) {
+                    out[written++] = high | values[j];
+                }
+            } else {
+                long[] words = (long[]) chunk;
+                for (int w = 0; w < WORDS && written < size; w++) {
+                    long word = words[w];
+                    while (word != 0 && written < size) {
+                        int low = (w << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                        if (skip > 0) {
+                            skip--;
+                        } else {
+                            out[written++] = high | low;
+                        }
+                    }
+                }
+            }
+            skip = 0;
+        }
+        return out;
+    }
+
+    /**
+     * Intersects two sets.
+     * @param other another set
+     * @return the ids in both
+     */
+    CardBitmap and(CardBitmap other) {
+        Builder out = new Builder();
+        int i = 0, j = 0;
+        while (i < this.keys.length && j < other.keys.length) {
+            if (this.keys[i] < other.keys[j]) {
+                i++;
+            } else if (this.keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                out.append(this.keys[i], and(this.chunks[i], other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return out.build();
+    }
+
+    /**
+     * Unites two sets.
+     * @param other another set
+     * @return the ids in either
+     */
+    CardBitmap or(CardBitmap other) {
+        Builder out = new Builder();
+        int i = 0, j = 0;
+        while (i < this.keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < this.keys.length && this.keys[i] < other.keys[j])) {
+                out.append(this.keys[i], this.chunks[i]);
+                i++;
+            } else if (i == this.keys.length || this.keys[i] > other.keys[j]) {
+                out.append(other.keys[j], other.chunks[j]);
+                j++;
+            } else {
+                out.append(this.keys[i], or(this.chunks[i], other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return out.build();
+    }
+
+    /**
+     * Subtracts a set from this one.
+     * @param other the ids to remove
+     * @return the ids in this set and not in the other
+     */
+    CardBitmap andNot(CardBitmap other) {
+        Builder out = new Builder();
+        int j = 0;
+        for (int i = 0; i < this.keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < this.keys[i]) {
+                j++;
+            }
+            if (j < other.keys.length && other.keys[j] == this.keys[i]) {
+                out.append(this.keys[i], andNot(this.chunks[i], other.chunks[j]));
+            } else {
+                out.append(this.keys[i], this.chunks[i]);
+            }
+        }
+        return out.build();
+    }
+
+    /**
+     * Intersects two chunks.
+     */
+    private static Object and(Object a, Object b) {
+        if (a instanceof char[] && b instanceof char[]) {
+            char[] x = (char[]) a, y = (char[]) b;
+            char[] out = new char[Math.min(x.length, y.length)];
+            int n = 0, i = 0, j = 0;
+            while (i < x.length && j < y.length) {
+                if (x[i] < y[j]) {
+                    i++;
+                } else if (x[i] > y[j]) {
+                    j++;
+                } else {
+                    out[n++] = x[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+        if (a instanceof char[] || b instanceof char[]) {
+            // Probe the bitset with each value of the array
+            char[] values = (char[]) (a instanceof char[] ? a : b);
+            long[] words = (long[]) (a instanceof char[] ? b : a);
+            char[] out = new char[values.length];
+            int n = 0;
+            for (char value : values) {
+                if ((words[value >>> 6] & (1L << value)) != 0) {
+                    out[n++] = value;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+        long[] x = (long[]) a, y = (long[]) b;
+        long[] out = new long[WORDS];
+        for (int w = 0; w < WORDS; w++) {
+            out[w] = x[w] & y[w];
+        }
+        return out;
+    }
+
+    /**
+     * Unites two chunks.
+     */
+    private static Object or(Object a, Object b) {
+        if (a instanceof char[] && b instanceof char[]) {
+            char[] x = (char[]) a, y = (char[]) b;
+            char[] out = new char[x.length + y.length];
+            int n = 0, i = 0, j = 0;
+            while (i < x.length || j < y.length) {
+                if (j == y.length || (i < x.length && x[i] < y[j])) {
+                    out[n++] = x[i++];
+                } else if (i == x.length || x[i] > y[j]) {
+                    out[n++] = y[j++];
+                } else {
+                    out[n++] = x[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+        long[] out = new long[WORDS];
+        for (Object chunk : new Object[] {a, b}) {
+            if (chunk instanceof char[]) {
+                for (char value : (char[]) chunk) {
+                    out[value >>> 6] |= 1L << value;
+                }
+            } else {
+                long[] words = (long[]) chunk;
+                for (int w = 0; w < WORDS; w++) {
+                    out[w] |= words[w];
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Subtracts one chunk from another.
+     */
+    private static Object andNot(Object a, Object b) {
+        if (a instanceof char[]) {
+            char[] values = (char[]) a;
+            char[] out = new char[values.length];
+            int n = 0;
+            if (b instanceof char[]) {
+                char[] remove = (char[]) b;
+                int j = 0;
+                for (char value : values) {
+                    while (j < remove.length && remove[j] < value) {
+                        j++;
+                    }
+                    if (j == remove.length || remove[j] != value) {
+                        out[n++] = value;
+                    }
+                }
+            } else {
+                long[] words = (long[]) b;
+                for (char value : values) {
+                    if ((words[value >>> 6] & (1L << value)) == 0) {
+                        out[n++] = value;
+                    }
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+        long[] out = ((long[]) a).clone();
+        if (b instanceof char[]) {
+            for (char value : (char[]) b) {
+                out[value >>> 6] &= ~(1L << value);
+            }
+        } else {
+            long[] words = (long[]) b;
+            for (int w = 0; w < WORDS; w++) {
+                out[w] &= ~words[w];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Collects ids or whole chunks in ascending order and picks the smaller form for each chunk.
+     */
+    static final class Builder {
+        private char[] keys = new char[4];
+        private Object[] chunks = new Object[4];
+        private int[] cardinalities = new int[4];
+        private int size = 0;
+        // Chunk being filled by add, as a bitset until it is closed
+        private int openKey = -1;
+        private long[] open = null;
+
+        /**
+         * Adds an id, which must be larger than every id added before.
+         * @param id a card id
+         */
+        void add(int id) {
+            int key = id >>> 16;
+            if (key != this.openKey) {
+                this.close();
+                this.openKey = key;
+                this.open = new long[WORDS];
+            }
+            char low = (char) id;
+            this.open[low >>> 6] |= 1L << low;
+        }
+
+        /**
+         * Builds the set.
+         * @return an immutable bitmap of everything added
+         */
+        CardBitmap build() {
+            this.close();
+            if (this.size == 0) {
+                return EMPTY;
+            }
+            return new CardBitmap(Arrays.copyOf(this.keys, this.size), Arrays.copyOf(this.chunks, this.size),
+                    Arrays.copyOf(this.cardinalities, this.size));
+        }
+
+        /**
+         * Appends the chunk being filled by add.
+         */
+        private void close() {
+            if (this.open != null) {
+                this.append((char) this.openKey, this.open);
+                this.open = null;
+            }
+        }
+
+        /**
+         * Appends a whole chunk after every chunk so far, converting it to its smaller form.
+         * @param key the high 16 bits of the chunk
+         * @param chunk a sorted char[] or a long[] bitset; empty chunks are dropped
+         */
+        void append(char key, Object chunk) {
+            int cardinality;
+            if (chunk instanceof char[]) {
+                char[] values = (char[]) chunk;
+                cardinality = values.length;
+                if (cardinality > ARRAY_MAX) {
+                    long[] words = new long[WORDS];
+                    for (char value : values) {
+                        words[value >>> 6] |= 1L << value;
+                    }
+                    chunk = words;
+                }
+            } else {
+                long[] words = (long[]) chunk;
+                cardinality = 0;
+                for (long word : words) {
+                    cardinality += Long.bitCount(word);
+                }
+                if (cardinality <= ARRAY_MAX) {
+                    char[] values = new char[cardinality];
+                    int n = 0;
+                    for (int w = 0; w < WORDS; w++) {
+                        long word = words[w];
+                        while (word != 0) {
+                            values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                            word &= word - 1;
+                        }
+                    }
+                    chunk = values;
+                }
+            }
+            if (cardinality == 0) {
+                return;
+            }
+            if (this.size == this.keys.length) {
+                this.keys = Arrays.copyOf(this.keys, this.size * 2);
+                this.chunks = Arrays.copyOf(this.chunks, this.size * 2);
+                this.cardinalities = Arrays.copyOf(this.cardinalities, this.size * 2);
+            }
+            this.keys[this.size] = key;
+            this.chunks[this.size] = chunk;
+            this.cardinalities[this.size] = cardinality;
+            this.size++;
+        }
+    }
+}
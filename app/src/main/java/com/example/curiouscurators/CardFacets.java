@@ -0,0 +1,106 @@
+package com.example.curiouscurators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One {@link CardBitmap} per value of each card facet, for answering {@link CardQuery}s.
+ * Every facet comes straight from the {@link CardStore} columns, so building them never decodes a card.
+ */
+public final class CardFacets {
+    /**
+     * The card fields that can be filtered on.
+     */
+    public enum Facet {
+        Category, Type, Rarity, Set, Illustrator, RegulationMark
+    }
+
+    // Number of cards the facets cover
+    final int size;
+    // Bitmap of every card, the starting point for a query that only excludes
+    private final CardBitmap all;
+    // Cards of each value of each facet
+    private final EnumMap<Facet, HashMap<String, CardBitmap>> bitmaps = new EnumMap<>(Facet.class);
+
+    /**
+     * Builds the bitmaps of every facet value.
+     * @param store the catalog columns
+     */
+    CardFacets(CardStore store) {
+        this.size = store.size;
+        this.all = CardBitmap.range(store.size);
+        EnumMap<Facet, HashMap<String, CardBitmap.Builder>> builders = new EnumMap<>(Facet.class);
+        for (Facet facet : Facet.values()) {
+            builders.put(facet, new HashMap<String, CardBitmap.Builder>());
+        }
+        // Ids are visited in ascending order, as the builders require
+        for (int id = 0; id < store.size; id++) {
+            add(builders, Facet.Category, store.categories[id], id);
+            add(builders, Facet.Rarity, store.rarities[id], id);
+            add(builders, Facet.Set, store.setIds[id], id);
+            add(builders, Facet.Illustrator, store.illustrators[id], id);
+            for (String type : store.types[id]) {
+                add(builders, Facet.Type, type, id);
+            }
+            add(builders, Facet.RegulationMark, store.regulationMarks[id], id);
+        }
+        for (Map.Entry<Facet, HashMap<String, CardBitmap.Builder>> facet : builders.entrySet()) {
+            HashMap<String, CardBitmap> values = new HashMap<>();
+            for (Map.Entry<String, CardBitmap.Builder> value : facet.getValue().entrySet()) {
+                values.put(value.getKey(), value.getValue().build());
+            }
+            this.bitmaps.put(facet.getKey(), values);
+        }
+    }
+
+    /**
+     * Retrieves the cards with a facet value.
+     * @param facet the facet
+     * @param value the exact value, such as {@code "Fire"} or {@code "base1"}
+     * @return the matching cards, empty if no card has the value
+     */
+    CardBitmap get(Facet facet, String value) {
+        CardBitmap bitmap = this.bitmaps.get(facet).get(value);
+        return bitmap == null ? CardBitmap.EMPTY : bitmap;
+    }
+
+    /**
+     * Retrieves every card.
+     * @return the bitmap of all card ids
+     */
+    CardBitmap all() {
+        return this.all;
+    }
+
+    /**
+     * Lists the values a facet takes, for example to offer them as filter choices.
+     * @param facet the facet
+     * @return the distinct values, sorted
+     */
+    public List<String> values(Facet facet) {
+        ArrayList<String> values = new ArrayList<>(this.bitmaps.get(facet).keySet());
+        Collections.sort(values);
+        return values;
+    }
+
+    /**
+     * Adds a card to the builder of one facet value, skipping missing values.
+     */
+    private static void add(EnumMap<Facet, HashMap<String, CardBitmap.Builder>> builders,
+                            Facet facet, String value, int id) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        HashMap<String, CardBitmap.Builder> values = builders.get(facet);
+        CardBitmap.Builder builder = values.get(value);
+        if (builder == null) {
+            builder = new CardBitmap.Builder();
+            values.put(value, builder);
+        }
+        builder.add(id);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.curiouscurators;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Search keys and sort permutations precomputed from {@code cards.json} at build time.
+ * The {@code generateCardIndexes} task in the app module writes them to the
+ * {@code card_indexes.bin} asset, so a fresh parse of the catalog does not have to clean
+ * every key or sort the name, artist and set indexes on the device.
+ *
+ * <pre>
+ * header   magic, version, CRC32 of cards.json, card count
+ * tables   name, artist and set, each: distinct key count, distinct keys in sorted order
+ *          (modified UTF-8), int[cardCount] key rank by card id, int[cardCount] permutation
+ * </pre>
+ */
+final class CardIndexes {
+    private static final String TAG = "CardIndexes";
+    static final String ASSET = "card_indexes.bin";
+    // "CCI1"
+    private static final int MAGIC = 0x43434931;
+    // Must match the version written by the build task
+    private static final int VERSION = 1;
+    // Number of cards whose keys are cleaned again at runtime to check the precomputed ones
+    private static final int KEY_SAMPLES = 256;
+
+    // Number of cards the indexes were built for
+    final int cardCount;
+    // Cleaned search keys, indexed by card id; equal keys share one String
+    final String[] nameKeys, artistKeys, setKeys;
+    // Card ids sorted by name, artist and set key; ties keep catalog order
+    final int[] byName, byArtist, bySet;
+
+    private CardIndexes(int cardCount, String[][] keys, int[][] permutations) {
+        this.cardCount = cardCount;
+        this.nameKeys = keys[0];
+        this.artistKeys = keys[1];
+        this.setKeys = keys[2];
+        this.byName = permutations[0];
+        this.byArtist = permutations[1];
+        this.bySet = permutations[2];
+    }
+
+    /**
+     * Loads the precomputed indexes if the asset exists and was built from the current catalog.
+     * @param context context used to open the asset
+     * @param assetHash CRC32 of the {@code cards.json} asset
+     * @return the indexes, or null if they are missing, stale or malformed
+     */
+    static CardIndexes read(Context context, long assetHash) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(context.getAssets().open(ASSET)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != assetHash) {
+                Log.w(TAG, "Ignoring stale " + ASSET);
+                return null;
+            }
+            int cardCount = in.readInt();
+            String[][] keys = new String[3][cardCount];
+            int[][] permutations = new int[3][cardCount];
+            for (int table = 0; table < 3; table++) {
+                String[] distinct = new String[in.readInt()];
+                for (int i = 0; i < distinct.length; i++) {
+                    distinct[i] = in.readUTF();
+                }
+                for (int id = 0; id < cardCount; id++) {
+                    keys[table][id] = distinct[in.readInt()];
+                }
+                for (int i = 0; i < cardCount; i++) {
+                    permutations[table][i] = in.readInt();
+                }
+                if (!isSorted(keys[table], permutations[table])) {
+                    Log.w(TAG, "Ignoring unsorted " + ASSET);
+                    return null;
+                }
+            }
+            return new CardIndexes(cardCount, keys, permutations);
+        } catch (FileNotFoundException e) {
+            // Built without a catalog, the indexes are sorted at runtime instead
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Ignoring unreadable " + ASSET, e);
+            return null;
+        }
+    }
+
+    /**
+     * Spot-checks the precomputed keys against cards parsed on the device. The build cleans keys
+     * with its own JSON parser and string handling, so a catalog value either side reads differently
+     * would leave searches silently missing cards; such indexes are not used.
+     * @param cards the parsed cards, in catalog order
+     * @return true if the indexes cover these cards and every sampled key matches
+     */
+    boolean matches(Card[] cards) {
+        if (cards.length != this.cardCount) {
+            return false;
+        }
+        int step = Math.max(1, cards.length / KEY_SAMPLES);
+        for (int id = 0; id < cards.length; id += step) {
+            Card card = cards[id];
+            if (!Card.cleanName(card.name).equals(this.nameKeys[id])
+                    || !Card.cleanName(card.illustrator).equals(this.artistKeys[id])
+                    || !Card.cleanName(card.setName).equals(this.setKeys[id])) {
+                Log.w(TAG, "Ignoring " + ASSET + ", keys differ from card " + card.globalId);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a permutation orders the keys, so binary searches over it are sound.
+     * @param keys keys indexed by card id
+     * @param permutation card ids in claimed key order
+     * @return true if the permutation is in non-decreasing key order
+     */
+    private static boolean isSorted(String[] keys, int[] permutation) {
+        for (int i = 1; i < permutation.length; i++) {
+            if (keys[permutation[i - 1]].compareTo(keys[permutation[i]]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
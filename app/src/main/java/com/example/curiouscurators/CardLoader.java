@@ -0,0 +1,175 @@
+package com.example.curiouscurators;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses the card catalog on every available core.
+ * One reader splits the input into batches of lines, each batch is parsed into cards on a
+ * fork-join pool, and the batches are joined back in file order so the result is deterministic.
+ * A card's position in the file becomes its dense id in the {@link CardStore}.
+ */
+final class CardLoader {
+    // Number of lines handed to a single parsing task
+    private static final int BATCH_SIZE = 256;
+
+    // Cards in file order, indexed by card id
+    final Card[] cards;
+    // Columns and sort indexes of the cards
+    final CardStore store;
+
+    CardLoader(Card[] cards, CardStore store) {
+        this.cards = cards;
+        this.store = store;
+    }
+
+    /**
+     * Reads and parses a catalog with one card JSON object per line, then builds the sorted indexes.
+     * @param in stream over the catalog; it is closed once read
+     * @return the parsed cards and their indexes
+     * @throws IOException if the stream cannot be read
+     * @throws Json.ParsingException if any line is not a valid card
+     */
+    static CardLoader load(InputStream in) throws IOException, Json.ParsingException {
+        return CardLoader.load(in, null);
+    }
+
+    /**
+     * Reads and parses a catalog, taking the search keys and sort indexes from a build-time copy
+     * when one is given and matches the parsed cards.
+     * @param in stream over the catalog; it is closed once read
+     * @param indexes precomputed indexes for this catalog, or null to build them
+     * @return the parsed cards and their indexes
+     * @throws IOException if the stream cannot be read
+     * @throws Json.ParsingException if any line is not a valid card
+     */
+    static CardLoader load(InputStream in, CardIndexes indexes) throws IOException, Json.ParsingException {
+        boolean cleanKeys = indexes == null;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        ArrayList<ForkJoinTask<Batch>> pending = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            ArrayList<String> lines = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() == BATCH_SIZE) {
+                    pending.add(pool.submit(new BatchTask(lines, cleanKeys)));
+                    lines = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!lines.isEmpty()) {
+                pending.add(pool.submit(new BatchTask(lines, cleanKeys)));
+            }
+        }
+
+        // Join in submission order so cards stay in file order
+        ArrayList<Batch> batches = new ArrayList<>(pending.size());
+        int count = 0;
+        for (ForkJoinTask<Batch> task : pending) {
+            Batch batch;
+            try {
+                batch = task.join();
+            } catch (ParseFailure e) {
+                throw e.failure;
+            }
+            batches.add(batch);
+            count += batch.cards.length;
+        }
+        Card[] cards = new Card[count];
+        String[] nameKeys = new String[count];
+        String[] artistKeys = new String[count];
+        String[] setKeys = new String[count];
+        int offset = 0;
+        for (Batch batch : batches) {
+            int size = batch.cards.length;
+            System.arraycopy(batch.cards, 0, cards, offset, size);
+            if (cleanKeys) {
+                System.arraycopy(batch.nameKeys, 0, nameKeys, offset, size);
+                System.arraycopy(batch.artistKeys, 0, artistKeys, offset, size);
+                System.arraycopy(batch.setKeys, 0, setKeys, offset, size);
+            }
+            offset += size;
+        }
+
+        if (indexes != null) {
+            if (indexes.matches(cards)) {
+                return new CardLoader(cards, CardStore.build(cards, indexes));
+            }
+            // Should not happen while the hash matches, but never trust a mismatched index
+            return new CardLoader(cards, CardStore.build(cards));
+        }
+        // The sort indexes are built with stable parallel sorts
+        return new CardLoader(cards, CardStore.build(cards, nameKeys, artistKeys, setKeys));
+    }
+
+    /**
+     * Cards parsed from one batch of lines, along with their cleaned search keys if requested.
+     */
+    private static class Batch {
+        final Card[] cards;
+        final String[] nameKeys, artistKeys, setKeys;
+
+        Batch(int size) {
+            this.cards = new Card[size];
+            this.nameKeys = new String[size];
+            this.artistKeys = new String[size];
+            this.setKeys = new String[size];
+        }
+    }
+
+    /**
+     * Parses one batch of lines on a pool thread.
+     */
+    private static class BatchTask extends RecursiveTask<Batch> {
+        private final ArrayList<String> lines;
+        // Whether to compute the search keys of each card
+        private final boolean cleanKeys;
+
+        BatchTask(ArrayList<String> lines, boolean cleanKeys) {
+            this.lines = lines;
+            this.cleanKeys = cleanKeys;
+        }
+
+        @Override
+        protected Batch compute() {
+            Batch batch = new Batch(this.lines.size());
+            for (int i = 0; i < this.lines.size(); i++) {
+                Card c;
+                try {
+                    c = Card.fromString(this.lines.get(i));
+                } catch (Json.ParsingException e) {
+                    throw new ParseFailure(e);
+                }
+                batch.cards[i] = c;
+                if (!this.cleanKeys) {
+                    continue;
+                }
+                batch.nameKeys[i] = Card.cleanName(c.name);
+                batch.artistKeys[i] = Card.cleanName(c.illustrator);
+                batch.setKeys[i] = Card.cleanName(c.setName);
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Carries a checked parsing error out of a pool thread.
+     */
+    private static class ParseFailure extends RuntimeException {
+        final Json.ParsingException failure;
+
+        ParseFailure(Json.ParsingException failure) {
+            super(failure);
+            this.failure = failure;
+        }
+    }
+}
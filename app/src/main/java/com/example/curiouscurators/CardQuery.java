@@ -0,0 +1,165 @@
+package com.example.curiouscurators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A compound filter over card facets, such as "Fire Pokemon illustrated by Mitsuhiro Arita in base1".
+ * Queries are immutable trees of facet values combined with {@link #and}, {@link #or} and {@link #not},
+ * and are evaluated against the {@link CardFacets} bitmaps, so each combination is a few bitmap
+ * operations rather than a scan of the catalog.
+ */
+public abstract class CardQuery {
+    /**
+     * Computes the cards matching this query.
+     * @param facets the facet bitmaps of the catalog
+     * @return the matching card ids
+     */
+    abstract CardBitmap evaluate(CardFacets facets);
+
+    /**
+     * Runs the query against the loaded catalog.
+     * @return ids of the matching cards, in catalog order
+     */
+    public int[] run() {
+        return this.evaluate(Card.getFacets()).toArray();
+    }
+
+    /**
+     * Runs the query against the loaded catalog and returns one page of the result.
+     * @param offset number of matching cards to skip
+     * @param limit largest number of cards to return
+     * @return ids of the matching cards on the page, in catalog order
+     */
+    public int[] page(int offset, int limit) {
+        return this.evaluate(Card.getFacets()).page(offset, limit);
+    }
+
+    /**
+     * Matches every card.
+     * @return the query
+     */
+    public static CardQuery all() {
+        return new CardQuery() {
+            @Override
+            CardBitmap evaluate(CardFacets facets) {
+                return facets.all();
+            }
+        };
+    }
+
+    /**
+     * Matches the cards with a facet value.
+     * @param facet the facet
+     * @param value the exact value, as listed by {@link CardFacets#values}
+     * @return the query
+     */
+    public static CardQuery is(final CardFacets.Facet facet, final String value) {
+        return new CardQuery() {
+            @Override
+            CardBitmap evaluate(CardFacets facets) {
+                return facets.get(facet, value);
+            }
+        };
+    }
+
+    /**
+     * Matches the cards with any of several values of one facet.
+     * @param facet the facet
+     * @param values the accepted values
+     * @return the query
+     */
+    public static CardQuery anyOf(CardFacets.Facet facet, String... values) {
+        CardQuery[] queries = new CardQuery[values.length];
+        for (int i = 0; i < values.length; i++) {
+            queries[i] = is(facet, values[i]);
+        }
+        return or(queries);
+    }
+
+    /**
+     * Matches the cards that match every query.
+     * @param queries the queries to combine
+     * @return the query
+     */
+    public static CardQuery and(final CardQuery... queries) {
+        return new CardQuery() {
+            @Override
+            CardBitmap evaluate(CardFacets facets) {
+                // Negated parts are subtracted instead of complemented
+                ArrayList<CardBitmap> included = new ArrayList<>();
+                ArrayList<CardBitmap> excluded = new ArrayList<>();
+                for (CardQuery query : queries) {
+                    if (query instanceof Not) {
+                        excluded.add(((Not) query).query.evaluate(facets));
+                    } else {
+                        included.add(query.evaluate(facets));
+                    }
+                }
+                if (included.isEmpty()) {
+                    included.add(facets.all());
+                }
+                // Intersect the smallest sets first, so the running result shrinks fastest
+                CardBitmap[] sorted = included.toArray(new CardBitmap[0]);
+                Arrays.sort(sorted, new Comparator<CardBitmap>() {
+                    @Override
+                    public int compare(CardBitmap a, CardBitmap b) {
+                        return Integer.compare(a.cardinality(), b.cardinality());
+                    }
+                });
+                CardBitmap result = sorted[0];
+                for (int i = 1; i < sorted.length && !result.isEmpty(); i++) {
+                    result = result.and(sorted[i]);
+                }
+                for (int i = 0; i < excluded.size() && !result.isEmpty(); i++) {
+                    result = result.andNot(excluded.get(i));
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Matches the cards that match any of the queries.
+     * @param queries the queries to combine
+     * @return the query
+     */
+    public static CardQuery or(final CardQuery... queries) {
+        return new CardQuery() {
+            @Override
+            CardBitmap evaluate(CardFacets facets) {
+                CardBitmap result = CardBitmap.EMPTY;
+                for (CardQuery query : queries) {
+                    result = result.or(query.evaluate(facets));
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Matches the cards that do not match a query.
+     * @param query the query to negate
+     * @return the query
+     */
+    public static CardQuery not(CardQuery query) {
+        return new Not(query);
+    }
+
+    /**
+     * Negation, kept as its own class so {@link #and} can subtract it directly.
+     */
+    private static final class Not extends CardQuery {
+        private final CardQuery query;
+
+        Not(CardQuery query) {
+            this.query = query;
+        }
+
+        @Override
+        CardBitmap evaluate(CardFacets facets) {
+            return facets.all().andNot(this.query.evaluate(facets));
+        }
+    }
+}
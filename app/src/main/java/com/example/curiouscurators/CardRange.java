@@ -0,0 +1,92 @@
+package com.example.curiouscurators;
+
+import java.util.Arrays;
+
+/**
+ * Immutable view of a run of card ids, such as the matches of a prefix within a sort index.
+ * A view only records the array it looks into and its bounds, so exposing every card of a
+ * sort index costs the same as exposing one. Rows are read one at a time or a page at a time;
+ * nothing is copied until a caller asks for a page.
+ */
+public final class CardRange {
+    // View with no ids
+    static final CardRange EMPTY = new CardRange(new int[0], 0, 0);
+
+    // The array looked into, which must never be modified
+    private final int[] ids;
+    // Bounds of the view within ids
+    private final int start, end;
+
+    /**
+     * Constructs a view of part of an array.
+     * @param ids card ids, which must not be modified afterwards
+     * @param start first index in the view
+     * @param end index after the last one
+     */
+    CardRange(int[] ids, int start, int end) {
+        if (start < 0 || end > ids.length || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + ids.length);
+        }
+        this.ids = ids;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Constructs a view of a whole array.
+     * @param ids card ids, which must not be modified afterwards
+     * @return the view
+     */
+    static CardRange of(int[] ids) {
+        return ids.length == 0 ? EMPTY : new CardRange(ids, 0, ids.length);
+    }
+
+    /**
+     * Returns the number of ids in the view.
+     * @return the size
+     */
+    public int size() {
+        return this.end - this.start;
+    }
+
+    /**
+     * Reads one id.
+     * @param position a position in the view
+     * @return the card id at that position
+     */
+    public int get(int position) {
+        if (position < 0 || position >= this.size()) {
+            throw new IndexOutOfBoundsException(position + " of " + this.size());
+        }
+        return this.ids[this.start + position];
+    }
+
+    /**
+     * Copies one page of the view.
+     * @param offset first position of the page
+     * @param limit largest number of ids to copy
+     * @return up to limit ids, fewer at the end of the view
+     */
+    public int[] page(int offset, int limit) {
+        int from = this.start + Math.min(Math.max(offset, 0), this.size());
+        int to = from + Math.min(Math.max(limit, 0), this.end - from);
+        return Arrays.copyOfRange(this.ids, from, to);
+    }
+
+    /**
+     * Copies the whole view.
+     * @return the ids in view order
+     */
+    public int[] toArray() {
+        return Arrays.copyOfRange(this.ids, this.start, this.end);
+    }
+
+    /**
+     * Checks whether two views show the same ids without comparing them one by one.
+     * @param other another view
+     * @return true if both look into the same array with the same bounds
+     */
+    boolean sameAs(CardRange other) {
+        return this.ids == other.ids && this.start == other.start && this.end == other.end;
+    }
+}
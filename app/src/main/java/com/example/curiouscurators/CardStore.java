@@ -0,0 +1,482 @@
+package com.example.curiouscurators;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+
+/**
+ * Column-oriented table of the catalog fields used for listing and searching cards.
+ * Every card has a dense int id (its position in the catalog), each field is stored as an array
+ * indexed by that id, and each sort index is an int permutation of ids ordered by a cleaned key.
+ * Search results and list rows read these columns directly instead of building {@code Card} objects.
+ */
+public final class CardStore {
+    // Types of a card that has none
+    static final String[] NO_TYPES = new String[0];
+    // Store with no cards, used until the catalog has loaded
+    static final CardStore EMPTY = new CardStore(new String[0], new String[0], new String[0],
+            new String[0], new String[0], new String[0], new String[0],
+            new int[0], new String[0][], new String[0],
+            new String[0], new String[0], new String[0],
+            new int[0], new int[0], new int[0]);
+
+    // Number of cards
+    public final int size;
+    // Display columns, indexed by card id
+    public final String[] globalIds, names, illustrators, setIds, setNames, categories, rarities;
+    // Pokemon columns, indexed by card id: HP, or -1 for cards without HP, types, and regulation mark,
+    // empty for other cards; kept here so sorting and facets never have to build a card
+    final int[] hps;
+    final String[][] types;
+    final String[] regulationMarks;
+    // Cleaned search keys, indexed by card id
+    final String[] nameKeys, artistKeys, setKeys;
+    // Card ids sorted by name, artist and set key; ties keep catalog order
+    final int[] byName, byArtist, bySet;
+    // Prefix tries over byName, byArtist and bySet, built the first time each is searched
+    private final EnumMap<CardSubset.FilterType, PrefixIndex> prefixIndexes = new EnumMap<>(CardSubset.FilterType.class);
+    // Trigram indexes over the same sort indexes, built the first time each is searched by substring
+    private final EnumMap<CardSubset.FilterType, TrigramIndex> trigramIndexes = new EnumMap<>(CardSubset.FilterType.class);
+    // Word-start indexes over the same sort indexes, built the first time each is searched by word
+    private final EnumMap<CardSubset.FilterType, TokenIndex> tokenIndexes = new EnumMap<>(CardSubset.FilterType.class);
+    // BK-trees over the distinct keys and their words, built the first time each is searched fuzzily
+    private final EnumMap<CardSubset.FilterType, FuzzyIndex> fuzzyIndexes = new EnumMap<>(CardSubset.FilterType.class);
+    // Inverted index over the free text of every card, built the first time text is searched
+    private volatile TextIndex text;
+    // Facet bitmaps for compound queries, built the first time a query runs
+    private volatile CardFacets facets;
+    // Recent filter results of each filter type, created on first use
+    private final ResultCache[] resultCaches = new ResultCache[CardSubset.FilterType.values().length];
+    // Card ids in HP order, and the rank of every card in each sort order, built on first use
+    private int[] byHp;
+    private final int[][] ranks = new int[CardSubset.SortType.values().length][];
+    // Global ids in sorted order, and the card id at the same position, for id lookups
+    private final String[] sortedGlobalIds;
+    private final int[] sortedGlobalIdRows;
+
+    /**
+     * Constructs a store from complete columns and sort indexes.
+     */
+    CardStore(String[] globalIds, String[] names, String[] illustrators, String[] setIds,
+              String[] setNames, String[] categories, String[] rarities,
+              int[] hps, String[][] types, String[] regulationMarks,
+              String[] nameKeys, String[] artistKeys, String[] setKeys,
+              int[] byName, int[] byArtist, int[] bySet) {
+        this.size = globalIds.length;
+        this.globalIds = globalIds;
+        this.names = names;
+        this.illustrators = illustrators;
+        this.setIds = setIds;
+        this.setNames = setNames;
+        this.categories = categories;
+        this.rarities = rarities;
+        this.hps = hps;
+        this.types = types;
+        this.regulationMarks = regulationMarks;
+        this.nameKeys = nameKeys;
+        this.artistKeys = artistKeys;
+        this.setKeys = setKeys;
+        this.byName = byName;
+        this.byArtist = byArtist;
+        this.bySet = bySet;
+        this.sortedGlobalIdRows = sortedBy(globalIds, false);
+        this.sortedGlobalIds = new String[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.sortedGlobalIds[i] = globalIds[this.sortedGlobalIdRows[i]];
+        }
+    }
+
+    /**
+     * Builds the columns and sort indexes for cards in catalog order.
+     * @param cards the cards; a card's position becomes its id
+     * @return the store
+     */
+    static CardStore build(Card[] cards) {
+        int size = cards.length;
+        String[] nameKeys = new String[size], artistKeys = new String[size], setKeys = new String[size];
+        for (int i = 0; i < size; i++) {
+            nameKeys[i] = Card.cleanName(cards[i].name);
+            artistKeys[i] = Card.cleanName(cards[i].illustrator);
+            setKeys[i] = Card.cleanName(cards[i].setName);
+        }
+        return build(cards, nameKeys, artistKeys, setKeys);
+    }
+
+    /**
+     * Builds the columns and sort indexes for cards whose search keys are already cleaned.
+     * @param cards the cards; a card's position becomes its id
+     * @param nameKeys cleaned names, indexed by card id
+     * @param artistKeys cleaned illustrators, indexed by card id
+     * @param setKeys cleaned set names, indexed by card id
+     * @return the store
+     */
+    static CardStore build(Card[] cards, String[] nameKeys, String[] artistKeys, String[] setKeys) {
+        return build(cards, nameKeys, artistKeys, setKeys,
+                sortedBy(nameKeys, true), sortedBy(artistKeys, true), sortedBy(setKeys, true));
+    }
+
+    /**
+     * Builds the columns for cards whose search keys and sort indexes were precomputed.
+     * @param cards the cards; a card's position becomes its id
+     * @param indexes keys and permutations built for exactly these cards
+     * @return the store
+     */
+    static CardStore build(Card[] cards, CardIndexes indexes) {
+        return build(cards, indexes.nameKeys, indexes.artistKeys, indexes.setKeys,
+                indexes.byName, indexes.byArtist, indexes.bySet);
+    }
+
+    /**
+     * Copies the display columns out of the cards and pairs them with finished indexes.
+     */
+    private static CardStore build(Card[] cards, String[] nameKeys, String[] artistKeys, String[] setKeys,
+                                   int[] byName, int[] byArtist, int[] bySet) {
+        int size = cards.length;
+        String[] globalIds = new String[size], names = new String[size], illustrators = new String[size],
+                setIds = new String[size], setNames = new String[size], categories = new String[size],
+                rarities = new String[size], regulationMarks = new String[size];
+        int[] hps = new int[size];
+        String[][] types = new String[size][];
+        for (int i = 0; i < size; i++) {
+            Card c = cards[i];
+            globalIds[i] = c.globalId;
+            names[i] = c.name;
+            illustrators[i] = c.illustrator;
+            setIds[i] = c.setId;
+            setNames[i] = c.setName;
+            categories[i] = c.category;
+            rarities[i] = c.rarity;
+            if (c instanceof Card.Pokemon) {
+                Card.Pokemon pokemon = (Card.Pokemon) c;
+                hps[i] = Math.max(-1, pokemon.hp);
+                types[i] = pokemon.types.toArray(new String[0]);
+                regulationMarks[i] = pokemon.regulationMark;
+            } else {
+                hps[i] = -1;
+                types[i] = NO_TYPES;
+                regulationMarks[i] = "";
+            }
+        }
+        return new CardStore(globalIds, names, illustrators, setIds, setNames, categories, rarities,
+                hps, types, regulationMarks, nameKeys, artistKeys, setKeys, byName, byArtist, bySet);
+    }
+
+    /**
+     * Finds the dense id of a card.
+     * @param globalId the global ID of the card
+     * @return the card id, or -1 if there is no such card
+     */
+    public int idOf(String globalId) {
+        int position = Arrays.binarySearch(this.sortedGlobalIds, globalId);
+        return position < 0 ? -1 : this.sortedGlobalIdRows[position];
+    }
+
+    /**
+     * Builds one kind of index over a sort index.
+     */
+    private interface IndexBuilder<T extends KeyIndex> {
+        T build(String[] keys, int[] sorted);
+    }
+
+    /**
+     * Retrieves the prefix trie over the sort index of a filter type, building it on first use.
+     * @param filterType the key the trie is over
+     * @return the trie, whose ranges are positions in the matching sort index
+     */
+    PrefixIndex prefixIndex(CardSubset.FilterType filterType) {
+        return this.keyIndex(this.prefixIndexes, filterType, new IndexBuilder<PrefixIndex>() {
+            @Override
+            public PrefixIndex build(String[] keys, int[] sorted) {
+                return new PrefixIndex(keys, sorted);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the trigram index over the sort index of a filter type, building it on first use.
+     * @param filterType the key the index is over
+     * @return the index, whose results are card ids in the order of the matching sort index
+     */
+    TrigramIndex trigramIndex(CardSubset.FilterType filterType) {
+        return this.keyIndex(this.trigramIndexes, filterType, new IndexBuilder<TrigramIndex>() {
+            @Override
+            public TrigramIndex build(String[] keys, int[] sorted) {
+                return new TrigramIndex(keys, sorted);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the word-start index over the sort index of a filter type, building it on first use.
+     * @param filterType the key the index is over
+     * @return the index, whose results are card ids in the order of the matching sort index
+     */
+    TokenIndex tokenIndex(CardSubset.FilterType filterType) {
+        return this.keyIndex(this.tokenIndexes, filterType, new IndexBuilder<TokenIndex>() {
+            @Override
+            public TokenIndex build(String[] keys, int[] sorted) {
+                return new TokenIndex(keys, sorted);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the BK-tree over the keys of a filter type, building it on first use.
+     * @param filterType the key the tree is over
+     * @return the tree, whose results are card ids ranked by edit distance
+     */
+    FuzzyIndex fuzzyIndex(CardSubset.FilterType filterType) {
+        return this.keyIndex(this.fuzzyIndexes, filterType, new IndexBuilder<FuzzyIndex>() {
+            @Override
+            public FuzzyIndex build(String[] keys, int[] sorted) {
+                return new FuzzyIndex(keys, sorted);
+            }
+        });
+    }
+
+    /**
+     * Retrieves an index over the sort index of a filter type, building it on first use. Like
+     * {@link #textIndex()}, building happens outside the store lock, so the first search of a kind
+     * does not hold up other lookups; if two threads race, the first index published is kept.
+     * Text filters have no key of their own and get the index over names.
+     * @param indexes the indexes of one kind built so far, guarded by the store lock
+     * @param filterType the key the index is over
+     * @param builder builds a missing index
+     * @return the index
+     */
+    private <T extends KeyIndex> T keyIndex(EnumMap<CardSubset.FilterType, T> indexes,
+                                            CardSubset.FilterType filterType, IndexBuilder<T> builder) {
+        if (filterType != CardSubset.FilterType.Artist && filterType != CardSubset.FilterType.Set) {
+            filterType = CardSubset.FilterType.Name;
+        }
+        T index;
+        synchronized (this) {
+            index = indexes.get(filterType);
+        }
+        if (index == null) {
+            switch (filterType) {
+                case Artist:
+                    index = builder.build(this.artistKeys, this.byArtist);
+                    break;
+                case Set:
+                    index = builder.build(this.setKeys, this.bySet);
+                    break;
+                default:
+                    index = builder.build(this.nameKeys, this.byName);
+                    break;
+            }
+            synchronized (this) {
+                if (indexes.get(filterType) == null) {
+                    indexes.put(filterType, index);
+                }
+                index = indexes.get(filterType);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Retrieves the full-text index over the effects, attacks and descriptions of every card,
+     * building it on first use. The text is read through {@link Card#getBodyText(int)}, which in
+     * lazy mode reads it from the snapshot records without building any card. Building happens
+     * outside the store lock, so other lookups are not held up; if two threads race, the first
+     * index published is kept.
+     * @return the index, whose results are card ids
+     */
+    TextIndex textIndex() {
+        TextIndex text = this.text;
+        if (text == null) {
+            String[] texts = new String[this.size];
+            for (int id = 0; id < this.size; id++) {
+                texts[id] = Card.getBodyText(id);
+            }
+            text = new TextIndex(texts);
+            synchronized (this) {
+                if (this.text == null) {
+                    this.text = text;
+                }
+                text = this.text;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Retrieves the facet bitmaps of the catalog, building them on first use. Like {@link #textIndex()},
+     * building happens outside the store lock, and if two threads race the first facets published are kept.
+     * @return the facets, built from the store columns
+     */
+    CardFacets facets() {
+        CardFacets facets = this.facets;
+        if (facets == null) {
+            facets = new CardFacets(this);
+            synchronized (this) {
+                if (this.facets == null) {
+                    this.facets = facets;
+                }
+                facets = this.facets;
+            }
+        }
+        return facets;
+    }
+
+    /**
+     * Retrieves the cache of recent filter results of a filter type.
+     * @param filterType the key the results were matched against
+     * @return the cache, which lives as long as this store
+     */
+    synchronized ResultCache resultCache(CardSubset.FilterType filterType) {
+        ResultCache cache = this.resultCaches[filterType.ordinal()];
+        if (cache == null) {
+            cache = new ResultCache();
+            this.resultCaches[filterType.ordinal()] = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * Retrieves the card ids in a sort order.
+     * HP order puts the highest HP first, ties in name order, and cards without HP last; it is
+     * built from the HP column the first time it is used.
+     * @param sortType the order; relevance depends on the filter and is ranked by {@link RelevanceRanking} instead
+     * @return every card id, in that order
+     */
+    synchronized int[] order(CardSubset.SortType sortType) {
+        switch (sortType) {
+            case Artist:
+                return this.byArtist;
+            case Set:
+                return this.bySet;
+            case Hp:
+                if (this.byHp == null) {
+                    this.byHp = this.hpOrder();
+                }
+                return this.byHp;
+            default:
+                return this.byName;
+        }
+    }
+
+    /**
+     * Retrieves the position of every card in a sort order, the inverse of {@link #order}.
+     * @param sortType the order
+     * @return ranks indexed by card id; no two cards share a rank
+     */
+    synchronized int[] ranks(CardSubset.SortType sortType) {
+        int[] ranks = this.ranks[sortType.ordinal()];
+        if (ranks == null) {
+            int[] order = this.order(sortType);
+            ranks = new int[this.size];
+            for (int position = 0; position < order.length; position++) {
+                ranks[order[position]] = position;
+            }
+            this.ranks[sortType.ordinal()] = ranks;
+        }
+        return ranks;
+    }
+
+    /**
+     * Reorders a list of card ids into a sort order.
+     * Large lists are picked out of the full permutation in one pass; smaller ones are radix
+     * sorted on their integer ranks, a byte at a time, so no strings are compared.
+     * @param ids distinct card ids
+     * @param sortType the order
+     * @return the same ids in that order
+     */
+    int[] sort(CardRange ids, CardSubset.SortType sortType) {
+        if (ids.size() < 2) {
+            return ids.toArray();
+        }
+        if (ids.size() >= this.size / 8) {
+            // Walking the whole permutation is cheaper than sorting most of it
+            boolean[] wanted = new boolean[this.size];
+            for (int i = 0; i < ids.size(); i++) {
+                wanted[ids.get(i)] = true;
+            }
+            int[] sorted = new int[ids.size()];
+            int next = 0;
+            for (int id : this.order(sortType)) {
+                if (wanted[id]) {
+                    sorted[next++] = id;
+                }
+            }
+            return sorted;
+        }
+        int[] ranks = this.ranks(sortType);
+        int[] from = ids.toArray(), to = new int[from.length];
+        int[] counts = new int[257];
+        // Ranks are below size, so only the bytes that size needs are sorted on
+        for (int shift = 0; shift == 0 || (shift < 32 && (this.size - 1) >>> shift != 0); shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int id : from) {
+                counts[((ranks[id] >>> shift) & 0xff) + 1]++;
+            }
+            for (int b = 0; b < 256; b++) {
+                counts[b + 1] += counts[b];
+            }
+            for (int id : from) {
+                to[counts[(ranks[id] >>> shift) & 0xff]++] = id;
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        return from;
+    }
+
+    /**
+     * Orders the cards by HP with a counting sort over the name order, which keeps ties in name order.
+     * @return card ids, highest HP first and cards without HP last
+     */
+    private int[] hpOrder() {
+        int[] hp = this.hps;
+        int maxHp = -1;
+        for (int id = 0; id < this.size; id++) {
+            maxHp = Math.max(maxHp, hp[id]);
+        }
+        // Bucket b holds HP maxHp - b, so the last bucket is the cards without HP
+        int buckets = maxHp + 2;
+        int[] starts = new int[buckets + 1];
+        for (int id = 0; id < this.size; id++) {
+            starts[maxHp - hp[id] + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            starts[b + 1] += starts[b];
+        }
+        int[] order = new int[this.size];
+        for (int id : this.byName) {
+            order[starts[maxHp - hp[id]]++] = id;
+        }
+        return order;
+    }
+
+    /**
+     * Computes the permutation of ids that orders a column.
+     * The sort is stable, so equal values keep catalog order.
+     * @param column values indexed by card id
+     * @param parallel whether to sort on all cores
+     * @return card ids in column order
+     */
+    static int[] sortedBy(final String[] column, boolean parallel) {
+        Integer[] order = new Integer[column.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Comparator<Integer> byValue = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return column[a].compareTo(column[b]);
+            }
+        };
+        if (parallel) {
+            Arrays.parallelSort(order, byValue);
+        } else {
+            Arrays.sort(order, byValue);
+        }
+        int[] permutation = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            permutation[i] = order[i];
+        }
+        return permutation;
+    }
+}
@@ -2,25 +2,34 @@ package com.example.curiouscurators;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Represents a subset of cards with filtering and sorting options.
  * This class allows for filtering and sorting of card collections based on different criteria.
- * It includes enums to specify filter and sort types, and a list to hold the filtered card data.
+ * It includes enums to specify filter and sort types, and an array holding the ids of the filtered cards.
  */
 public class CardSubset {
-    // Filters cards by Name, Artist, and Set
+    // Filters cards by Name, Artist, and Set, or by the words of their effects, attacks and descriptions
     public enum FilterType {
-        Name, Artist, Set
+        Name, Artist, Set, Text
+    }
+
+    /**
+     * How the filter string is matched against a key: at its start, anywhere inside it, at the
+     * start of its words (every word of the filter, in any order), or allowing a few typos against
+     * the whole key or one of its words.
+     */
+    public enum MatchMode {
+        Prefix, Substring, Fuzzy, Words
     }
 
     /**
      * Enum representing the different types of sorting that can be applied to the card subset.
+     * Relevance puts the best matches of the filter first; see {@link RelevanceRanking}.
      */
     public enum SortType {
-        Name, Artist, Set
+        Name, Artist, Set, Hp, Relevance
     }
 
     // The filter string used to match against card attributes
@@ -29,121 +38,313 @@ public class CardSubset {
     // The type of filter applied to the card subset
     FilterType filterType;
 
-    // List of card data that matches the filter criteria
-    ArrayList<String[]> contained;
+    // How the filter is matched against the key
+    MatchMode matchMode;
+
+    // The order of the results; fuzzy near misses stay ranked by closeness instead
+    SortType sortType;
+
+    // Facet query the results must also match, or null to match on the filter alone
+    CardQuery query;
+
+    // Whether a filter that matches nothing exactly is retried with typos allowed
+    boolean fuzzyFallback;
+
+    // Ids of the matching cards, in the order of the current index
+    CardRange contained;
+
+    // Relevance ranking of every match while only the best of them are in contained, or null once all are
+    RelevanceRanking ranking;
 
     /**
      * Constructs a CardSubset with default settings.
      * Initializes the subset with a filter type of Name and an empty filter string.
      */
     public CardSubset() {
+        this(MatchMode.Prefix, SortType.Name, false);
+        this.search();
+    }
+
+    /**
+     * Constructs an empty subset with the given settings, without searching.
+     * The results stay empty until {@link #refresh()}, which can then run off the main thread.
+     * @param matchMode how the filter is matched against the key
+     * @param sortType the order to show the cards in
+     * @param fuzzyFallback true to show near misses instead of an empty list
+     */
+    CardSubset(MatchMode matchMode, SortType sortType, boolean fuzzyFallback) {
         this.filter = "";
         this.filterType = FilterType.Name;
-        this.contained = new ArrayList<>();
-        this.applyFilter(this.getSearchSet());
+        this.matchMode = matchMode;
+        this.sortType = sortType;
+        this.fuzzyFallback = fuzzyFallback;
+        this.query = null;
+        this.contained = CardRange.EMPTY;
+        this.ranking = null;
+    }
+
+    /**
+     * Constructs a copy of another subset's settings and results, without searching again.
+     * @param other the subset to copy
+     */
+    CardSubset(CardSubset other) {
+        this.adopt(other);
     }
 
     /**
-     * Retrieves the appropriate card set based on the current filter type.
-     * @return ArrayList of String arrays representing the filtered set of cards.
+     * Takes over another subset's settings and results, without searching again.
+     * Used to publish a subset computed in the background.
+     * @param other the subset to copy
+     */
+    void adopt(CardSubset other) {
+        this.filter = other.filter;
+        this.filterType = other.filterType;
+        this.matchMode = other.matchMode;
+        this.sortType = other.sortType;
+        this.query = other.query;
+        this.fuzzyFallback = other.fuzzyFallback;
+        this.contained = other.contained;
+        this.ranking = other.ranking;
+    }
+
+    /**
+     * Retrieves the sort index matching the current filter type.
+     * @return card ids ordered by the filtered key
      */
     @NonNull
-    private ArrayList<String[]> getSearchSet() {
-        // Determine which set of cards to return based on the filter type
+    private int[] getSearchSet() {
+        CardStore store = Card.getStore();
+        // Determine which index to search based on the filter type
         switch (this.filterType) {
-            case Name: // Return cards sorted by name
-                return Card.getCardsByName();
-            case Artist: // Return cards sorted by artist
-                return Card.getCardsByArtist();
-            case Set: // Return cards sorted by set
-                return Card.getCardsBySet();
+            case Name: // Cards sorted by name
+                return store.byName;
+            case Artist: // Cards sorted by artist
+                return store.byArtist;
+            case Set: // Cards sorted by set
+                return store.bySet;
+            case Text: // Card text has no sort index of its own
+                return store.byName;
         }
         throw new RuntimeException("Unreachable"); // Unreachable but needed for compilation
     }
 
     /**
-     * Resets the current filter and applies it anew to populate the contained subset.
+     * Matches the current filter against the whole index of the current filter type.
+     * Prefix queries go to the SQLite mirror when it is enabled and built, and to memory otherwise;
+     * substring and fuzzy queries always use the in-memory indexes. Each lookup goes through the
+     * store's {@link ResultCache} for the filter type first.
+     * Exact matches come out in filter key order and are then put in sort order, or ranked by
+     * relevance with only the best screenful listed until {@link #listAtLeast} asks for more;
+     * fuzzy results are ranked by edit distance and keep that order.
+     * Text filters ignore the match mode and are ranked by BM25 when sorting by relevance.
      */
-    private void resetAndFilter() {
-        this.contained.clear();
-        ArrayList<String[]> searchSet = this.getSearchSet();
-        assert searchSet != null;
-        for (String[] card : searchSet) {
-            String name = card[0];
-            if (name.startsWith(this.filter)) {
-                this.contained.add(card);
+    private void search() {
+        boolean ranked = false;
+        this.ranking = null;
+        if (this.filterType == FilterType.Text) {
+            this.contained = this.textSearch();
+            ranked = !this.filter.isEmpty() && this.sortType == SortType.Relevance;
+        } else if (this.matchMode == MatchMode.Fuzzy) {
+            this.contained = this.fuzzySearch();
+            ranked = true;
+        } else if (this.matchMode == MatchMode.Substring) {
+            this.contained = this.substringSearch();
+        } else if (this.matchMode == MatchMode.Words) {
+            this.contained = this.wordSearch();
+            if (this.contained.size() == 0) {
+                // Fall back to the middle of words, so "izard" still finds "charizard"
+                this.contained = this.substringSearch();
             }
+        } else {
+            this.contained = this.prefixSearch();
+        }
+        if (this.contained.size() == 0 && this.fuzzyFallback && this.matchMode != MatchMode.Fuzzy
+                && this.filterType != FilterType.Text) {
+            this.contained = this.fuzzySearch();
+            ranked = true;
+        }
+        if (this.query != null) {
+            this.contained = CardRange.of(this.restrict(this.contained, this.query.evaluate(Card.getFacets())));
+        }
+        if (!ranked && this.sortType == SortType.Relevance) {
+            RelevanceRanking ranking = RelevanceRanking.rank(this.contained, this.filter, this.filterType);
+            this.contained = ranking.best(RelevanceRanking.FIRST_SCREEN);
+            this.ranking = this.contained.size() < ranking.size() ? ranking : null;
+        } else if (!ranked && !this.isInSortOrder()) {
+            this.contained = CardRange.of(Card.getStore().sort(this.contained, this.sortType));
         }
     }
 
     /**
-     * Applies a filter to a list of string arrays and updates the `contained` list with the filtered results.
-     *
-     * This method performs a binary search on a sorted `searchSet` to find the range of entries that begin with the given filter.
-     * It first finds the start of the range where the filter matches, then finds the end of the range, and updates the `contained`
-     * list with the entries within that range. If no matching entries are found, the `contained` list is cleared.
-     *
-     * @param searchSet ArrayList of string arrays where each string array contains elements to be filtered.
-     * The list is expected to be sorted based on the first element of each string array.
-     */
-    private void applyFilter(ArrayList<String[]> searchSet) {
-        int wordLength = this.filter.length();
-        // Use binary search to find the range of values which begin with the filter
-        int low = 0, high = searchSet.size() - 1, rangeStart = -1, rangeEnd = -1;
-        // Find start
-        while (low <= high) {
-            int middle = (low + high) / 2;
-            String atMiddle = searchSet.get(middle)[0];
-            String substring = atMiddle.substring(0, Integer.min(wordLength, atMiddle.length()));
-            if (substring.compareTo(this.filter) > 0) {
-                high = middle - 1;
-            } else if (substring.compareTo(this.filter) < 0) {
-                low = middle + 1;
-            } else {
-                rangeStart = middle;
-                high = middle - 1;
+     * Checks whether results in filter key order are already in sort order.
+     * @return true if the filter key and the sort key are the same
+     */
+    private boolean isInSortOrder() {
+        switch (this.sortType) {
+            case Name:
+                return this.filterType == FilterType.Name;
+            case Artist:
+                return this.filterType == FilterType.Artist;
+            case Set:
+                return this.filterType == FilterType.Set;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Keeps the ids that are in a bitmap, without changing their order.
+     * @param ids card ids
+     * @param allowed the cards to keep
+     * @return the kept ids
+     */
+    private int[] restrict(CardRange ids, CardBitmap allowed) {
+        int[] kept = new int[Math.min(ids.size(), allowed.cardinality())];
+        int size = 0;
+        for (int i = 0; i < ids.size() && size < kept.length; i++) {
+            int id = ids.get(i);
+            if (allowed.contains(id)) {
+                kept[size++] = id;
             }
         }
-        if (rangeStart == -1) {
-            this.contained.clear();
-            return;
-        }
-
-        // Find end
-        low = 0;
-        high = searchSet.size() - 1;
-        // Perform binary search to find the end of the range
-        while (low <= high) {
-            int middle = (low + high) / 2;
-            String atMiddle = searchSet.get(middle)[0];
-            String substring = atMiddle.substring(0, Integer.min(wordLength, atMiddle.length()));
-            // Compare the substring with the filter value
-            if (substring.compareTo(this.filter) > 0) {
-                high = middle - 1;
-            } else if (substring.compareTo(this.filter) < 0) {
-                low = middle + 1;
-            } else {
-                rangeEnd = middle;
-                low = middle + 1;
+        return Arrays.copyOf(kept, size);
+    }
+
+    /**
+     * Matches the current filter at the start of the key, reusing a cached result when there is one.
+     * In memory the result is a view of the sort index, so its size does not affect the cost.
+     * @return ids of the matching cards, in filter key order
+     */
+    private CardRange prefixSearch() {
+        CardStore store = Card.getStore();
+        ResultCache cache = store.resultCache(this.filterType);
+        long range = cache.getRange(this.filter);
+        if (range < 0) {
+            CatalogDatabase database = Card.getDatabase();
+            if (database != null) {
+                int[] ids = cache.getIds(MatchMode.Prefix, this.filter);
+                if (ids == null) {
+                    ids = database.prefixRange(this.filterType, this.filter);
+                    cache.putIds(MatchMode.Prefix, this.filter, ids);
+                }
+                return CardRange.of(ids);
             }
+            // The trie lookup costs one step per character of the filter and allocates nothing
+            range = store.prefixIndex(this.filterType).find(this.filter);
+            cache.putRange(this.filter, range);
         }
+        return new CardRange(this.getSearchSet(), PrefixIndex.start(range), PrefixIndex.end(range));
+    }
 
-        // If no end range is found, clear the contained list and exit
-        if (rangeEnd == -1) {
-            this.contained.clear();
-            return;
+    /**
+     * Matches the current filter anywhere in the key, reusing a cached result when there is one.
+     * @return ids of the matching cards, in filter key order
+     */
+    private CardRange substringSearch() {
+        CardStore store = Card.getStore();
+        if (this.filter.isEmpty()) {
+            // Every key contains the empty string
+            int[] all = this.getSearchSet();
+            return new CardRange(all, 0, all.length);
+        }
+        ResultCache cache = store.resultCache(this.filterType);
+        int[] ids = cache.getIds(MatchMode.Substring, this.filter);
+        if (ids == null) {
+            ids = store.trigramIndex(this.filterType).find(this.filter);
+            cache.putIds(MatchMode.Substring, this.filter, ids);
         }
+        return CardRange.of(ids);
+    }
 
-        // Create a sublist from the start to the end of the found range
-        List<String[]> reducedList = searchSet.subList(rangeStart, rangeEnd);
-        this.contained = new ArrayList<>(reducedList);
+    /**
+     * Matches every word of the current filter against the start of a word of the key,
+     * reusing a cached result when there is one.
+     * @return ids of the matching cards, in filter key order
+     */
+    private CardRange wordSearch() {
+        CardStore store = Card.getStore();
+        if (TokenIndex.split(this.filter).length == 0) {
+            int[] all = this.getSearchSet();
+            return new CardRange(all, 0, all.length);
+        }
+        ResultCache cache = store.resultCache(this.filterType);
+        int[] ids = cache.getIds(MatchMode.Words, this.filter);
+        if (ids == null) {
+            ids = store.tokenIndex(this.filterType).find(this.filter);
+            cache.putIds(MatchMode.Words, this.filter, ids);
+        }
+        return CardRange.of(ids);
+    }
+
+    /**
+     * Matches every word of the current filter against the text of the cards,
+     * reusing a cached result when there is one.
+     * @return ids of the matching cards, best BM25 score first
+     */
+    private CardRange textSearch() {
+        CardStore store = Card.getStore();
+        if (this.filter.isEmpty()) {
+            int[] all = this.getSearchSet();
+            return new CardRange(all, 0, all.length);
+        }
+        ResultCache cache = store.resultCache(FilterType.Text);
+        // Text is always matched word by word, whatever the match mode
+        int[] ids = cache.getIds(MatchMode.Words, this.filter);
+        if (ids == null) {
+            ids = store.textIndex().find(this.filter);
+            cache.putIds(MatchMode.Words, this.filter, ids);
+        }
+        return CardRange.of(ids);
+    }
+
+    /**
+     * Matches the current filter within the edit distance its length allows,
+     * reusing a cached result when there is one.
+     * @return ids of the matching cards, closest first
+     */
+    private CardRange fuzzySearch() {
+        CardStore store = Card.getStore();
+        ResultCache cache = store.resultCache(this.filterType);
+        int[] ids = cache.getIds(MatchMode.Fuzzy, this.filter);
+        if (ids == null) {
+            int maxDistance = FuzzyIndex.maxDistanceFor(this.filter.length());
+            ids = store.fuzzyIndex(this.filterType).find(this.filter, maxDistance);
+            cache.putIds(MatchMode.Fuzzy, this.filter, ids);
+        }
+        return CardRange.of(ids);
+    }
+
+    /**
+     * Lists more of the matches ranked by relevance, when only the best of them are listed so far.
+     * The list grows by at least half again, so scrolling to the end only ranks a few times; the
+     * ids already listed stay at the front.
+     * @param count the number of matches that should be listed
+     * @return true if more were listed
+     */
+    boolean listAtLeast(int count) {
+        if (this.ranking == null || count <= this.contained.size()) {
+            return false;
+        }
+        this.contained = this.ranking.best(Math.max(count, this.contained.size() * 3 / 2));
+        if (this.contained.size() == this.ranking.size()) {
+            this.ranking = null;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether some matches are left out of the contained ids until {@link #listAtLeast} asks for them.
+     * @return true if only the best matches by relevance are listed so far
+     */
+    boolean hasMore() {
+        return this.ranking != null;
     }
 
     /**
      * Gets the subset of cards that match the current filter settings.
-     * @return ArrayList of String arrays representing the filtered cards.
+     * @return an immutable view of the ids of the matching cards, to be read from {@link Card#getStore()}
      */
-    public ArrayList<String[]> getContained() {
+    public CardRange getContained() {
         return this.contained;
     }
 
@@ -152,24 +353,59 @@ public class CardSubset {
      * @param newFilter the new filter string to apply.
      */
     public void setFilter(String newFilter) {
-        newFilter = Card.cleanName(newFilter);
-        if (newFilter.startsWith(this.filter)) {
-            this.filter = newFilter;
-            this.applyFilter(this.contained);
-        } else {
-            this.filter = newFilter;
-            this.contained.clear();
-            this.applyFilter(this.getSearchSet());
-        }
+        this.filter = Card.cleanName(newFilter);
+        this.search();
+    }
+
+    /**
+     * Re-applies the current filter to the whole index, for example once the catalog has loaded.
+     */
+    public void refresh() {
+        this.search();
     }
 
     /**
      * Sets the type of filter to apply and resets the filter accordingly.
-     * @param filterType the type of filter to apply (Name, Artist, or Set)
+     * @param filterType the type of filter to apply (Name, Artist, Set, or Text)
      */
     public void setFilterType(FilterType filterType) {
         this.filterType = filterType; // Update the filter type
-        this.contained.clear(); // Clears the previously filtered list of cards
-        this.applyFilter(this.getSearchSet()); // Applies the filter with the updated filter type
+        this.search(); // Applies the filter with the updated filter type
+    }
+
+    /**
+     * Sets how the filter is matched and updates the contained subset accordingly.
+     * @param matchMode whether the filter must start the key or may appear anywhere in it
+     */
+    public void setMatchMode(MatchMode matchMode) {
+        this.matchMode = matchMode;
+        this.search();
+    }
+
+    /**
+     * Sets whether a filter with no exact matches is retried as a fuzzy match.
+     * @param fuzzyFallback true to show near misses instead of an empty list
+     */
+    public void setFuzzyFallback(boolean fuzzyFallback) {
+        this.fuzzyFallback = fuzzyFallback;
+        this.search();
+    }
+
+    /**
+     * Narrows the subset to the cards matching a facet query, on top of the filter.
+     * @param query the query, such as Fire Pokemon from base1, or null to drop it
+     */
+    public void setQuery(CardQuery query) {
+        this.query = query;
+        this.search();
+    }
+
+    /**
+     * Sets the order of the results and reorders the contained subset accordingly.
+     * @param sortType the order to show the cards in
+     */
+    public void setSortType(SortType sortType) {
+        this.sortType = sortType;
+        this.search();
     }
 }
@@ -0,0 +1,282 @@
+package com.example.curiouscurators;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Optional SQLite copy of the catalog and the collection.
+ * The database holds one row per card, keyed by its {@link CardStore} id, with indexes on the
+ * cleaned name, artist and set keys; an FTS4 table over the name, illustrator, set name and the
+ * effect and attack text of every card; and the owned ids. Prefix filters and the owned-card list
+ * can then be answered by SQL instead of scanning memory.
+ *
+ * The catalog tables are rebuilt whenever the hash of {@code cards.json} changes. The owned table
+ * mirrors what the {@link OwnedCardsWriter} has written to the journal, which stays the source of truth.
+ */
+final class CatalogDatabase extends SQLiteOpenHelper {
+    private static final String NAME = "catalog.db";
+    private static final int VERSION = 1;
+
+    /**
+     * Opens (without yet creating) the database in the app's private storage.
+     * @param context the application context
+     */
+    CatalogDatabase(Context context) {
+        super(context, NAME, null, VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE meta (key TEXT PRIMARY KEY, value TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE cards ("
+                + "id INTEGER PRIMARY KEY, "
+                + "global_id TEXT NOT NULL UNIQUE, "
+                + "name TEXT NOT NULL, "
+                + "illustrator TEXT NOT NULL, "
+                + "set_id TEXT NOT NULL, "
+                + "set_name TEXT NOT NULL, "
+                + "category TEXT NOT NULL, "
+                + "rarity TEXT NOT NULL, "
+                + "name_key TEXT NOT NULL, "
+                + "artist_key TEXT NOT NULL, "
+                + "set_key TEXT NOT NULL)");
+        // The id column breaks ties, so results come back in the same order as the in-memory indexes
+        db.execSQL("CREATE INDEX cards_by_name ON cards (name_key, id)");
+        db.execSQL("CREATE INDEX cards_by_artist ON cards (artist_key, id)");
+        db.execSQL("CREATE INDEX cards_by_set ON cards (set_key, id)");
+        // Android's bundled SQLite always has FTS4; FTS5 is not enabled on every device
+        db.execSQL("CREATE VIRTUAL TABLE card_text USING fts4 (name, illustrator, set_name, body)");
+        db.execSQL("CREATE TABLE owned (global_id TEXT PRIMARY KEY) WITHOUT ROWID");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS meta");
+        db.execSQL("DROP TABLE IF EXISTS cards");
+        db.execSQL("DROP TABLE IF EXISTS card_text");
+        db.execSQL("DROP TABLE IF EXISTS owned");
+        this.onCreate(db);
+    }
+
+    /**
+     * Checks whether the catalog tables were built from the current asset.
+     * @param assetHash hash of the current catalog asset
+     * @return true if no rebuild is needed
+     */
+    boolean isCurrent(long assetHash) {
+        try (Cursor cursor = this.getReadableDatabase().rawQuery(
+                "SELECT value FROM meta WHERE key = 'asset_hash'", null)) {
+            return cursor.moveToNext() && cursor.getString(0).equals(Long.toString(assetHash));
+        }
+    }
+
+    /**
+     * Replaces the catalog tables with the given cards in one transaction.
+     * @param assetHash hash of the asset the cards were loaded from
+     * @param store the columns and search keys of the cards; the card text is read through {@link Card#getBodyText(int)}
+     */
+    void rebuild(long assetHash, CardStore store) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM cards");
+            db.execSQL("DELETE FROM card_text");
+            SQLiteStatement insertCard = db.compileStatement("INSERT INTO cards (id, global_id, name, illustrator, "
+                    + "set_id, set_name, category, rarity, name_key, artist_key, set_key) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            SQLiteStatement insertText = db.compileStatement(
+                    "INSERT INTO card_text (docid, name, illustrator, set_name, body) VALUES (?, ?, ?, ?, ?)");
+            for (int id = 0; id < store.size; id++) {
+                insertCard.bindLong(1, id);
+                insertCard.bindString(2, store.globalIds[id]);
+                insertCard.bindString(3, store.names[id]);
+                insertCard.bindString(4, store.illustrators[id]);
+                insertCard.bindString(5, store.setIds[id]);
+                insertCard.bindString(6, store.setNames[id]);
+                insertCard.bindString(7, store.categories[id]);
+                insertCard.bindString(8, store.rarities[id]);
+                insertCard.bindString(9, store.nameKeys[id]);
+                insertCard.bindString(10, store.artistKeys[id]);
+                insertCard.bindString(11, store.setKeys[id]);
+                insertCard.executeInsert();
+
+                insertText.bindLong(1, id);
+                insertText.bindString(2, store.names[id]);
+                insertText.bindString(3, store.illustrators[id]);
+                insertText.bindString(4, store.setNames[id]);
+                insertText.bindString(5, Card.getBodyText(id));
+                insertText.executeInsert();
+            }
+            insertCard.close();
+            insertText.close();
+            db.execSQL("INSERT OR REPLACE INTO meta (key, value) VALUES ('asset_hash', ?)",
+                    new Object[] {Long.toString(assetHash)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replaces the owned table with a complete set of owned ids.
+     * @param owned the owned global ids
+     */
+    void replaceOwned(Set<String> owned) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM owned");
+            SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO owned (global_id) VALUES (?)");
+            for (String globalId : owned) {
+                insert.bindString(1, globalId);
+                insert.executeInsert();
+            }
+            insert.close();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Applies a batch of ownership changes to the owned table.
+     * @param changes the new state of each changed card
+     */
+    void setOwned(Map<String, Boolean> changes) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO owned (global_id) VALUES (?)");
+            SQLiteStatement delete = db.compileStatement("DELETE FROM owned WHERE global_id = ?");
+            for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+                SQLiteStatement statement = change.getValue() ? insert : delete;
+                statement.bindString(1, change.getKey());
+                statement.execute();
+            }
+            insert.close();
+            delete.close();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Finds the cards whose key starts with a prefix, using the key's index.
+     * @param filterType which key to match
+     * @param prefix the cleaned prefix
+     * @return card ids in key order, ties in catalog order
+     */
+    int[] prefixRange(CardSubset.FilterType filterType, String prefix) {
+        String column;
+        switch (filterType) {
+            case Artist:
+                column = "artist_key";
+                break;
+            case Set:
+                column = "set_key";
+                break;
+            default:
+                column = "name_key";
+        }
+        String end = prefixEnd(prefix);
+        if (end == null) {
+            return this.queryIds("SELECT id FROM cards WHERE " + column + " >= ? ORDER BY " + column + ", id",
+                    new String[] {prefix});
+        }
+        String sql = "SELECT id FROM cards WHERE " + column + " >= ? AND " + column + " < ? ORDER BY " + column + ", id";
+        return this.queryIds(sql, new String[] {prefix, end});
+    }
+
+    /**
+     * Computes the smallest string above every string that starts with a prefix, by incrementing
+     * its last code point. SQLite compares text as UTF-8 bytes, which order like code points, so
+     * appending a high character would leave out keys with supplementary characters after the prefix.
+     * @param prefix the prefix
+     * @return the exclusive upper bound, or null if no string is above every match
+     */
+    static String prefixEnd(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int last = prefix.codePointBefore(end);
+            end -= Character.charCount(last);
+            if (last < Character.MAX_CODE_POINT) {
+                int next = last + 1;
+                if (next >= Character.MIN_SURROGATE && next <= Character.MAX_SURROGATE) {
+                    // Surrogates are not code points of their own
+                    next = Character.MAX_SURROGATE + 1;
+                }
+                return new StringBuilder(end + 2).append(prefix, 0, end).appendCodePoint(next).toString();
+            }
+            // The largest code point cannot be incremented, so carry into the one before it
+        }
+        return null;
+    }
+
+    /**
+     * Lists the owned cards that exist in the catalog.
+     * @return card ids in name order
+     */
+    int[] ownedIds() {
+        return this.queryIds("SELECT cards.id FROM owned JOIN cards USING (global_id) ORDER BY name_key, cards.id", null);
+    }
+
+    /**
+     * Runs a full-text query over the name, illustrator, set name and effect text of every card.
+     * @param query an FTS4 match expression, such as {@code "fire spin"} or {@code "burn*"}
+     * @return ids of the matching cards, in catalog order
+     */
+    int[] matchText(String query) {
+        return this.queryIds("SELECT docid FROM card_text WHERE card_text MATCH ? ORDER BY docid", new String[] {query});
+    }
+
+    /**
+     * Runs a query whose only column is a card id.
+     * @param sql the query
+     * @param args the bound arguments
+     * @return the ids in result order
+     */
+    private int[] queryIds(String sql, String[] args) {
+        try (Cursor cursor = this.getReadableDatabase().rawQuery(sql, args)) {
+            int[] ids = new int[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getInt(0);
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Collects the free text of a card: its effect, or for a Pokemon its description, item and attacks.
+     * @param card the card
+     * @return the text, separated by newlines
+     */
+    static String bodyText(Card card) {
+        StringBuilder body = new StringBuilder();
+        if (card instanceof Card.Pokemon) {
+            Card.Pokemon pokemon = (Card.Pokemon) card;
+            body.append(pokemon.description).append('\n')
+                    .append(pokemon.itemName).append('\n')
+                    .append(pokemon.itemEffect);
+            for (Card.Pokemon.Attack attack : pokemon.attacks) {
+                body.append('\n').append(attack.name).append('\n').append(attack.effect);
+            }
+        } else if (card instanceof Card.Energy) {
+            body.append(((Card.Energy) card).effect);
+        } else if (card instanceof Card.Trainer) {
+            body.append(((Card.Trainer) card).effect);
+        }
+        return body.toString();
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.curiouscurators;
+
+import android.os.Debug;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Timings of the phases of a catalog load.
+ * Each phase records its wall time, the bytes allocated by the runtime while it ran (where the
+ * runtime reports it) and how many cards and input bytes it handled. Phases also show up as
+ * {@code android.os.Trace} sections, so they can be lined up with a system trace; on a plain JVM,
+ * where the framework is stubbed out, tracing and allocation counts are skipped.
+ */
+public final class CatalogMetrics {
+    // Runtime statistic holding the bytes allocated by the process so far
+    private static final String BYTES_ALLOCATED = "art.gc.bytes-allocated";
+    // Cleared the first time the framework turns out to be unavailable
+    private static boolean frameworkAvailable = true;
+
+    // Finished phases, in the order they ended
+    private final ArrayList<Phase> phases = new ArrayList<>();
+
+    /**
+     * One finished phase of a catalog load.
+     */
+    public static final class Phase {
+        public final String name;
+        // Wall time of the phase
+        public final long wallNanos;
+        // Bytes allocated while the phase ran, or -1 if the runtime does not report it
+        public final long allocatedBytes;
+        // Cards produced or touched by the phase, or 0 if it does not deal in cards
+        public final int cards;
+        // Bytes read by the phase, or 0 if it reads nothing measurable
+        public final long bytes;
+
+        Phase(String name, long wallNanos, long allocatedBytes, int cards, long bytes) {
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.cards = cards;
+            this.bytes = bytes;
+        }
+
+        @NonNull
+        public String toString() {
+            StringBuilder out = new StringBuilder(this.name)
+                    .append(' ').append(this.wallNanos / 1000000.0).append("ms");
+            if (this.allocatedBytes >= 0) {
+                out.append(", ").append(this.allocatedBytes / 1024).append("KiB allocated");
+            }
+            if (this.cards > 0) {
+                out.append(", ").append(this.cards).append(" cards");
+            }
+            if (this.bytes > 0) {
+                out.append(", ").append(this.bytes).append(" bytes");
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * A phase that is still running. Phases must be ended on the thread that began them.
+     */
+    public final class Section {
+        private final String name;
+        private final long startNanos;
+        private final long startAllocated;
+
+        private Section(String name) {
+            this.name = name;
+            this.startAllocated = allocatedBytes();
+            beginTrace(name);
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Ends a phase that does not deal in cards or bytes.
+         */
+        public void end() {
+            this.end(0, 0);
+        }
+
+        /**
+         * Ends the phase and records it.
+         * @param cards cards produced or touched by the phase
+         * @param bytes bytes read by the phase
+         */
+        public void end(int cards, long bytes) {
+            long wallNanos = System.nanoTime() - this.startNanos;
+            endTrace();
+            long allocated = allocatedBytes();
+            long allocatedDuring = allocated < 0 || this.startAllocated < 0 ? -1 : allocated - this.startAllocated;
+            CatalogMetrics.this.record(new Phase(this.name, wallNanos, allocatedDuring, cards, bytes));
+        }
+    }
+
+    /**
+     * Starts timing a phase.
+     * @param name the phase name, which is also the trace section name
+     * @return the running phase, to be ended when the phase is done
+     */
+    public Section begin(String name) {
+        return new Section(name);
+    }
+
+    /**
+     * Retrieves the phases recorded so far.
+     * @return the finished phases, in the order they ended
+     */
+    public synchronized List<Phase> getPhases() {
+        return Collections.unmodifiableList(new ArrayList<>(this.phases));
+    }
+
+    /**
+     * Retrieves the wall time of all recorded phases.
+     * @return the summed wall time
+     */
+    public synchronized long getTotalNanos() {
+        long total = 0;
+        for (Phase phase : this.phases) {
+            total += phase.wallNanos;
+        }
+        return total;
+    }
+
+    /**
+     * Retrieves a recorded phase by name.
+     * @param name the phase name
+     * @return the phase, or null if no phase of that name has ended
+     */
+    public synchronized Phase getPhase(String name) {
+        for (Phase phase : this.phases) {
+            if (phase.name.equals(name)) {
+                return phase;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void record(Phase phase) {
+        this.phases.add(phase);
+    }
+
+    @NonNull
+    public synchronized String toString() {
+        StringBuilder out = new StringBuilder("catalog load ")
+                .append(this.getTotalNanos() / 1000000.0).append("ms");
+        for (Phase phase : this.phases) {
+            out.append("\n  ").append(phase);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Reads the process allocation counter.
+     * @return bytes allocated so far, or -1 if the runtime does not report it
+     */
+    private static long allocatedBytes() {
+        if (!frameworkAvailable) {
+            return -1;
+        }
+        try {
+            String value = Debug.getRuntimeStat(BYTES_ALLOCATED);
+            return value == null ? -1 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        } catch (RuntimeException e) {
+            frameworkAvailable = false;
+            return -1;
+        }
+    }
+
+    private static void beginTrace(String name) {
+        if (!frameworkAvailable) {
+            return;
+        }
+        try {
+            Trace.beginSection(name);
+        } catch (RuntimeException e) {
+            frameworkAvailable = false;
+        }
+    }
+
+    private static void endTrace() {
+        if (!frameworkAvailable) {
+            return;
+        }
+        try {
+            Trace.endSection();
+        } catch (RuntimeException e) {
+            frameworkAvailable = false;
+        }
+    }
+
+    /**
+     * Counts the bytes read through a stream, so a phase can report its input size.
+     */
+    static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Returns the number of bytes read so far.
+         * @return the byte count
+         */
+        long getCount() {
+            return this.count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                this.count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                this.count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,576 @@
+package com.example.curiouscurators;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary copy of the parsed card catalog, kept in app-private storage.
+ * The snapshot holds a deduplicated string table, one record per card and the search keys
+ * and sort permutations of the {@link CardStore}. It is stamped with a hash of the {@code cards.json} asset it was built from
+ * and is memory-mapped on later launches, so warm starts skip text parsing entirely.
+ * Records can also be decoded one at a time, which backs the lazy catalog mode; the store
+ * columns are then read straight from fixed offsets of each record.
+ *
+ * <pre>
+ * header   magic, version, asset hash, card count, string count,
+ *          offsets of the strings, records and indexes sections
+ * strings  int[stringCount + 1] end offsets, then UTF-8 bytes
+ * records  int[cardCount] record offsets, then one record per card
+ * indexes  name, artist and set key string ids, each int[cardCount] by card id,
+ *          then the name, artist and set permutations, each int[cardCount] of card ids
+ * </pre>
+ */
+final class CatalogSnapshot {
+    private static final String TAG = "CatalogSnapshot";
+    private static final String FILE_NAME = "catalog.snapshot";
+    // "CCS1"
+    private static final int MAGIC = 0x43435331;
+    // Bump whenever the record layout changes
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 36;
+
+    // Record kinds, stored as the first byte of each card record
+    private static final byte KIND_POKEMON = 0, KIND_ENERGY = 1, KIND_TRAINER = 2;
+    // Positions of the string ids that every record starts with, after the kind byte
+    private static final int FIELD_GLOBAL_ID = 0, FIELD_NAME = 2, FIELD_CATEGORY = 4, FIELD_ILLUSTRATOR = 5,
+            FIELD_RARITY = 6, FIELD_SET_ID = 7, FIELD_SET_NAME = 8;
+    // Positions of the fields that follow, in 4-byte slots: the effect of energy and trainer records,
+    // and the text fields, regulation mark, HP and type count of Pokemon records
+    private static final int FIELD_EFFECT = 11, FIELD_DESCRIPTION = 12, FIELD_ITEM_NAME = 15,
+            FIELD_ITEM_EFFECT = 16, FIELD_REGULATION_MARK = 17, FIELD_HP = 18, FIELD_TYPES = 21;
+
+    private final ByteBuffer buffer;
+    private final int cardCount, stringCount, stringsAt, stringData, recordsAt, recordData, indexesAt;
+
+    /**
+     * Computes the hash a snapshot must carry to be valid for the given asset.
+     * @param context context used to open the asset
+     * @param asset name of the catalog asset
+     * @return CRC32 of the asset bytes
+     * @throws IOException if the asset cannot be read
+     */
+    static long hashAsset(Context context, String asset) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = context.getAssets().open(asset)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Opens the snapshot if one exists and was built from an asset with the given hash.
+     * A stale or unreadable snapshot is deleted.
+     * @param context context whose private storage holds the snapshot
+     * @param assetHash hash of the current catalog asset
+     * @return the mapped snapshot, or null if there is no usable snapshot
+     */
+    static CatalogSnapshot open(Context context, long assetHash) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = map(file);
+            if (!isCurrent(buffer, assetHash)) {
+                file.delete();
+                return null;
+            }
+            return new CatalogSnapshot(buffer);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the catalog, replacing any previous one atomically.
+     * @param context context whose private storage receives the snapshot
+     * @param assetHash hash of the catalog asset the cards were parsed from
+     * @param catalog the parsed cards and store
+     */
+    static void write(Context context, long assetHash, CardLoader catalog) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File temp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        try {
+            byte[] encoded = encode(assetHash, catalog);
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(encoded);
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Snapshot write failed: " + e);
+            temp.delete();
+        }
+    }
+
+    /**
+     * Maps a snapshot file read-only into memory.
+     * @param file the snapshot file
+     * @return a buffer over the whole file
+     * @throws IOException if the file cannot be mapped
+     */
+    static ByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Checks the header of a mapped snapshot.
+     * @param buffer the mapped snapshot
+     * @param assetHash hash of the current catalog asset
+     * @return true if the snapshot has this format version and matches the asset
+     */
+    static boolean isCurrent(ByteBuffer buffer, long assetHash) {
+        return buffer.capacity() >= HEADER_SIZE
+                && buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getLong(8) == assetHash;
+    }
+
+    /**
+     * Wraps a mapped snapshot whose header has been checked.
+     * @param buffer the mapped snapshot
+     */
+    private CatalogSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.cardCount = buffer.getInt(16);
+        this.stringCount = buffer.getInt(20);
+        this.stringsAt = buffer.getInt(24);
+        this.stringData = this.stringsAt + 4 * (this.stringCount + 1);
+        this.recordsAt = buffer.getInt(28);
+        this.recordData = this.recordsAt + 4 * this.cardCount;
+        this.indexesAt = buffer.getInt(32);
+    }
+
+    /**
+     * Returns the number of cards in the snapshot.
+     * @return the card count
+     */
+    int cardCount() {
+        return this.cardCount;
+    }
+
+    /**
+     * Returns the size of the mapped snapshot file.
+     * @return the size in bytes
+     */
+    long byteSize() {
+        return this.buffer.capacity();
+    }
+
+    /**
+     * Decodes every card and the card store.
+     * @return the decoded catalog
+     */
+    CardLoader decodeAll() {
+        String[] strings = this.decodeStrings();
+        Card[] cards = new Card[this.cardCount];
+        for (int i = 0; i < this.cardCount; i++) {
+            cards[i] = this.readCard(this.record(i), strings);
+        }
+        return new CardLoader(cards, this.store(strings));
+    }
+
+    /**
+     * Decodes a single card without touching any other record.
+     * @param id the card id, which is its position in the catalog
+     * @return the card
+     */
+    Card card(int id) {
+        return this.readCard(this.record(id), null);
+    }
+
+    /**
+     * Decodes the store columns, search keys and sort permutations without building any card.
+     * @param strings the decoded string table, or null to decode only the strings the store uses
+     * @return the card store
+     */
+    CardStore store(String[] strings) {
+        if (strings == null) {
+            strings = new String[this.stringCount];
+        }
+        int count = this.cardCount;
+        String[] globalIds = new String[count], names = new String[count], illustrators = new String[count],
+                setIds = new String[count], setNames = new String[count], categories = new String[count],
+                rarities = new String[count], regulationMarks = new String[count];
+        int[] hps = new int[count];
+        String[][] types = new String[count][];
+        for (int id = 0; id < count; id++) {
+            int fields = this.recordData + this.buffer.getInt(this.recordsAt + 4 * id) + 1;
+            globalIds[id] = this.field(fields, FIELD_GLOBAL_ID, strings);
+            names[id] = this.field(fields, FIELD_NAME, strings);
+            illustrators[id] = this.field(fields, FIELD_ILLUSTRATOR, strings);
+            setIds[id] = this.field(fields, FIELD_SET_ID, strings);
+            setNames[id] = this.field(fields, FIELD_SET_NAME, strings);
+            categories[id] = this.field(fields, FIELD_CATEGORY, strings);
+            rarities[id] = this.field(fields, FIELD_RARITY, strings);
+            if (this.buffer.get(fields - 1) == KIND_POKEMON) {
+                hps[id] = Math.max(-1, this.buffer.getInt(fields + 4 * FIELD_HP));
+                int typesAt = fields + 4 * FIELD_TYPES;
+                int typeCount = this.buffer.getShort(typesAt);
+                types[id] = typeCount == 0 ? CardStore.NO_TYPES : new String[typeCount];
+                for (int i = 0; i < typeCount; i++) {
+                    types[id][i] = this.string(this.buffer.getInt(typesAt + 2 + 4 * i), strings);
+                }
+                regulationMarks[id] = this.field(fields, FIELD_REGULATION_MARK, strings);
+            } else {
+                hps[id] = -1;
+                types[id] = CardStore.NO_TYPES;
+                regulationMarks[id] = "";
+            }
+        }
+        String[][] keys = new String[3][count];
+        int[][] permutations = new int[3][count];
+        for (int table = 0; table < 3; table++) {
+            int keysAt = this.indexesAt + table * count * 4;
+            int permutationAt = this.indexesAt + (3 + table) * count * 4;
+            for (int i = 0; i < count; i++) {
+                keys[table][i] = this.string(this.buffer.getInt(keysAt + 4 * i), strings);
+                permutations[table][i] = this.buffer.getInt(permutationAt + 4 * i);
+            }
+        }
+        return new CardStore(globalIds, names, illustrators, setIds, setNames, categories, rarities,
+                hps, types, regulationMarks, keys[0], keys[1], keys[2], permutations[0], permutations[1], permutations[2]);
+    }
+
+    /**
+     * Reads the free text of a card straight from its record, without building the card.
+     * The text is laid out as {@link CatalogDatabase#bodyText(Card)} lays it out.
+     * @param id the card id
+     * @return the descriptions, item and attack names and effects, one per line
+     */
+    String bodyText(int id) {
+        int fields = this.recordData + this.buffer.getInt(this.recordsAt + 4 * id) + 1;
+        if (this.buffer.get(fields - 1) != KIND_POKEMON) {
+            return this.field(fields, FIELD_EFFECT, null);
+        }
+        StringBuilder body = new StringBuilder();
+        body.append(this.field(fields, FIELD_DESCRIPTION, null)).append('\n')
+                .append(this.field(fields, FIELD_ITEM_NAME, null)).append('\n')
+                .append(this.field(fields, FIELD_ITEM_EFFECT, null));
+        // Attacks follow the type ids; each is a name, an effect, a damage and a cost list
+        int at = fields + 4 * FIELD_TYPES;
+        at += 2 + 4 * this.buffer.getShort(at);
+        int attacks = this.buffer.getShort(at);
+        at += 2;
+        for (int i = 0; i < attacks; i++) {
+            body.append('\n').append(this.string(this.buffer.getInt(at)))
+                    .append('\n').append(this.string(this.buffer.getInt(at + 4)));
+            at += 12;
+            at += 2 + 4 * this.buffer.getShort(at);
+        }
+        return body.toString();
+    }
+
+    /**
+     * Returns a buffer positioned at the record of a card.
+     * @param id the card id
+     * @return an independent buffer positioned at the record
+     */
+    private ByteBuffer record(int id) {
+        ByteBuffer record = this.buffer.duplicate();
+        record.position(this.recordData + this.buffer.getInt(this.recordsAt + 4 * id));
+        return record;
+    }
+
+    /**
+     * Reads one of the leading string fields of a record without walking the rest of it.
+     * @param fieldsAt absolute offset of the first string id of the record
+     * @param field position of the field among the leading string ids
+     * @param strings decoded strings by id, filled in as they are decoded
+     * @return the field value
+     */
+    private String field(int fieldsAt, int field, String[] strings) {
+        return this.string(this.buffer.getInt(fieldsAt + 4 * field), strings);
+    }
+
+    /**
+     * Decodes a single string straight from the mapped table.
+     * @param id the string id
+     * @return the string
+     */
+    private String string(int id) {
+        int start = this.buffer.getInt(this.stringsAt + 4 * id);
+        int end = this.buffer.getInt(this.stringsAt + 4 * (id + 1));
+        byte[] utf8 = new byte[end - start];
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(this.stringData + start);
+        view.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Looks a string up in a table of decoded strings, decoding and filling it in if missing.
+     * @param id the string id
+     * @param strings decoded strings by id, or null to always decode
+     * @return the string
+     */
+    private String string(int id, String[] strings) {
+        if (strings == null) {
+            return this.string(id);
+        }
+        String value = strings[id];
+        if (value == null) {
+            value = this.string(id);
+            strings[id] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Decodes the whole string table.
+     * @return strings indexed by their id
+     */
+    private String[] decodeStrings() {
+        byte[] data = new byte[this.buffer.getInt(this.stringsAt + 4 * this.stringCount)];
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(this.stringData);
+        view.get(data);
+        String[] strings = new String[this.stringCount];
+        for (int i = 0; i < this.stringCount; i++) {
+            int start = this.buffer.getInt(this.stringsAt + 4 * i);
+            int end = this.buffer.getInt(this.stringsAt + 4 * (i + 1));
+            strings[i] = new String(data, start, end - start, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    /**
+     * Reads one card record at the buffer's position.
+     * @param in buffer positioned at a record
+     * @param strings the decoded string table, or null to decode strings from the mapping
+     * @return the card described by the record
+     */
+    private Card readCard(ByteBuffer in, String[] strings) {
+        byte kind = in.get();
+        Card.Fields fields = new Card.Fields();
+        fields.globalId = this.string(in.getInt(), strings);
+        fields.localId = this.string(in.getInt(), strings);
+        fields.name = this.string(in.getInt(), strings);
+        fields.image = this.string(in.getInt(), strings);
+        fields.category = this.string(in.getInt(), strings);
+        fields.illustrator = this.string(in.getInt(), strings);
+        fields.rarity = this.string(in.getInt(), strings);
+        fields.setId = this.string(in.getInt(), strings);
+        fields.setName = this.string(in.getInt(), strings);
+        fields.setLogo = this.string(in.getInt(), strings);
+        fields.setSymbol = this.string(in.getInt(), strings);
+        switch (kind) {
+            case KIND_ENERGY:
+                fields.effect = this.string(in.getInt(), strings);
+                fields.energyType = this.string(in.getInt(), strings);
+                return new Card.Energy(fields);
+            case KIND_TRAINER:
+                fields.effect = this.string(in.getInt(), strings);
+                fields.trainerType = this.string(in.getInt(), strings);
+                return new Card.Trainer(fields);
+            case KIND_POKEMON:
+                fields.evolveFrom = this.string(in.getInt(), strings);
+                fields.description = this.string(in.getInt(), strings);
+                fields.stage = this.string(in.getInt(), strings);
+                fields.suffix = this.string(in.getInt(), strings);
+                fields.itemName = this.string(in.getInt(), strings);
+                fields.itemEffect = this.string(in.getInt(), strings);
+                fields.regulationMark = this.string(in.getInt(), strings);
+                fields.hp = Integer.toString(in.getInt());
+                fields.level = Integer.toString(in.getInt());
+                fields.retreat = Integer.toString(in.getInt());
+                int types = in.getShort();
+                for (int i = 0; i < types; i++) {
+                    fields.types.add(this.string(in.getInt(), strings));
+                }
+                int attacks = in.getShort();
+                for (int i = 0; i < attacks; i++) {
+                    String name = this.string(in.getInt(), strings);
+                    String effect = this.string(in.getInt(), strings);
+                    String damage = this.string(in.getInt(), strings);
+                    int costs = in.getShort();
+                    ArrayList<String> cost = new ArrayList<>(costs);
+                    for (int j = 0; j < costs; j++) {
+                        cost.add(this.string(in.getInt(), strings));
+                    }
+                    fields.attacks.add(new Card.Pokemon.Attack(cost, name, effect, damage));
+                }
+                return new Card.Pokemon(fields);
+            default:
+                throw new IllegalStateException("Unknown record kind " + kind);
+        }
+    }
+
+    /**
+     * Serializes a catalog into the snapshot layout.
+     * @param assetHash hash of the catalog asset
+     * @param catalog the parsed cards and store
+     * @return the complete snapshot file contents
+     * @throws IOException never in practice, the output is in memory
+     */
+    private static byte[] encode(long assetHash, CardLoader catalog) throws IOException {
+        StringTable strings = new StringTable();
+        Card[] cards = catalog.cards;
+        CardStore store = catalog.store;
+
+        // Records
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        int[] recordOffsets = new int[cards.length];
+        for (int i = 0; i < cards.length; i++) {
+            recordOffsets[i] = records.size();
+            writeCard(records, strings, cards[i]);
+        }
+
+        // Indexes
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream indexes = new DataOutputStream(indexBytes);
+        for (String[] keys : new String[][] {store.nameKeys, store.artistKeys, store.setKeys}) {
+            for (String key : keys) {
+                indexes.writeInt(strings.id(key));
+            }
+        }
+        for (int[] permutation : new int[][] {store.byName, store.byArtist, store.bySet}) {
+            for (int id : permutation) {
+                indexes.writeInt(id);
+            }
+        }
+
+        // Strings
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        int[] stringEnds = new int[strings.values.size() + 1];
+        for (int i = 0; i < strings.values.size(); i++) {
+            byte[] utf8 = strings.values.get(i).getBytes(StandardCharsets.UTF_8);
+            stringBytes.write(utf8);
+            stringEnds[i + 1] = stringBytes.size();
+        }
+
+        int stringsAt = HEADER_SIZE;
+        int recordsAt = stringsAt + 4 * stringEnds.length + stringBytes.size();
+        int indexesAt = recordsAt + 4 * cards.length + records.size();
+        ByteArrayOutputStream file = new ByteArrayOutputStream(indexesAt + indexes.size());
+        DataOutputStream out = new DataOutputStream(file);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(assetHash);
+        out.writeInt(cards.length);
+        out.writeInt(strings.values.size());
+        out.writeInt(stringsAt);
+        out.writeInt(recordsAt);
+        out.writeInt(indexesAt);
+        for (int end : stringEnds) {
+            out.writeInt(end);
+        }
+        stringBytes.writeTo(out);
+        for (int offset : recordOffsets) {
+            out.writeInt(offset);
+        }
+        recordBytes.writeTo(out);
+        indexBytes.writeTo(out);
+        out.flush();
+        return file.toByteArray();
+    }
+
+    /**
+     * Writes one card record.
+     * @param out stream receiving the record
+     * @param strings string table the record refers into
+     * @param card the card to write
+     * @throws IOException never in practice, the output is in memory
+     */
+    private static void writeCard(DataOutputStream out, StringTable strings, Card card) throws IOException {
+        byte kind;
+        if (card instanceof Card.Pokemon) {
+            kind = KIND_POKEMON;
+        } else if (card instanceof Card.Energy) {
+            kind = KIND_ENERGY;
+        } else {
+            kind = KIND_TRAINER;
+        }
+        out.writeByte(kind);
+        out.writeInt(strings.id(card.globalId));
+        out.writeInt(strings.id(card.localId));
+        out.writeInt(strings.id(card.name));
+        out.writeInt(strings.id(card.image));
+        out.writeInt(strings.id(card.category));
+        out.writeInt(strings.id(card.illustrator));
+        out.writeInt(strings.id(card.rarity));
+        out.writeInt(strings.id(card.setId));
+        out.writeInt(strings.id(card.setName));
+        out.writeInt(strings.id(card.setLogo));
+        out.writeInt(strings.id(card.setSymbol));
+        if (card instanceof Card.Energy) {
+            Card.Energy energy = (Card.Energy) card;
+            out.writeInt(strings.id(energy.effect));
+            out.writeInt(strings.id(energy.type));
+        } else if (card instanceof Card.Trainer) {
+            Card.Trainer trainer = (Card.Trainer) card;
+            out.writeInt(strings.id(trainer.effect));
+            out.writeInt(strings.id(trainer.type));
+        } else {
+            Card.Pokemon pokemon = (Card.Pokemon) card;
+            out.writeInt(strings.id(pokemon.evolveFrom));
+            out.writeInt(strings.id(pokemon.description));
+            out.writeInt(strings.id(pokemon.stage));
+            out.writeInt(strings.id(pokemon.suffix));
+            out.writeInt(strings.id(pokemon.itemName));
+            out.writeInt(strings.id(pokemon.itemEffect));
+            out.writeInt(strings.id(pokemon.regulationMark));
+            out.writeInt(pokemon.hp);
+            out.writeInt(pokemon.level);
+            out.writeInt(pokemon.retreat);
+            out.writeShort(pokemon.types.size());
+            for (String type : pokemon.types) {
+                out.writeInt(strings.id(type));
+            }
+            out.writeShort(pokemon.attacks.size());
+            for (Card.Pokemon.Attack attack : pokemon.attacks) {
+                out.writeInt(strings.id(attack.name));
+                out.writeInt(strings.id(attack.effect));
+                out.writeInt(strings.id(attack.damage));
+                out.writeShort(attack.cost.size());
+                for (String cost : attack.cost) {
+                    out.writeInt(strings.id(cost));
+                }
+            }
+        }
+    }
+
+    /**
+     * Assigns each distinct string a dense id in order of first use.
+     */
+    private static class StringTable {
+        final ArrayList<String> values = new ArrayList<>();
+        private final HashMap<String, Integer> ids = new HashMap<>();
+
+        int id(String value) {
+            Integer id = this.ids.get(value);
+            if (id == null) {
+                id = this.values.size();
+                this.values.add(value);
+                this.ids.put(value, id);
+            }
+            return id;
+        }
+    }
+}
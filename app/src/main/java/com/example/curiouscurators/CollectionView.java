@@ -1,5 +1,6 @@
 package com.example.curiouscurators;
 
+import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.os.Bundle;
 
@@ -81,15 +82,28 @@ public class CollectionView extends AppCompatActivity {
             v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
             return insets;
         });
-        Card.initialize(this);
+        Card.initializeAsync(this);
 
-        this.ownedCards = Card.getOwnedCards();
+        this.ownedCards = new ArrayList<>();
 
         // Set up the RecyclerView with an adapter and layout manager
         this.collectionRecycler = findViewById(R.id.collectionRecyclerView);
         this.collectionAdapter = new CollectionRecyclerViewAdapter(this, this.ownedCards);
         this.collectionRecycler.setAdapter(this.collectionAdapter);
         this.collectionRecycler.setLayoutManager(new LinearLayoutManager(this));
+
+        // Show the owned cards once the catalog has loaded and they have been listed off the main thread
+        Card.loadOwnedCards(new Card.OwnedCardsListener() {
+            @SuppressLint("NotifyDataSetChanged")
+            @Override
+            public void onOwnedCards(ArrayList<Card> cards) {
+                if (CollectionView.this.isDestroyed()) {
+                    return;
+                }
+                CollectionView.this.ownedCards.addAll(cards);
+                CollectionView.this.collectionAdapter.notifyDataSetChanged();
+            }
+        });
     }
 }
 
@@ -133,7 +147,7 @@ class CollectionRecyclerViewAdapter
     public void onBindViewHolder(@NonNull MyViewHolder holder, int position) {
         Card current = this.cards.get(position);
         holder.name.setText(current.name);
-        holder.setLogo.setImageDrawable(Card.getLogoById(current.setId));
+        Card.loadLogoInto(holder.setLogo, current.setId);
         holder.artist.setText(current.illustrator);
         holder.set.setText(current.setName);
         holder.itemView.setOnClickListener(view -> {
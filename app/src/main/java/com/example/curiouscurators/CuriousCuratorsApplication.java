@@ -0,0 +1,22 @@
+package com.example.curiouscurators;
+
+import android.app.Application;
+
+/**
+ * Application entry point.
+ * Starts loading the card catalog as soon as the process starts, so activities can
+ * render right away and fill in their data once {@link Card#whenReady(Runnable)} fires.
+ */
+public class CuriousCuratorsApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Card.initializeAsync(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        Card.trimMemory(level);
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.curiouscurators;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * BK-tree over the distinct keys of one sort index of the {@link CardStore}, for typo-tolerant matching.
+ * The tree holds every distinct key and every word of those keys, so "charzard" finds the cards named
+ * "charizard" through the whole key and "dark charizard" through its second word. Keys are split into
+ * words the way {@link TokenIndex#split} does, so "ho-oh" is also found through "oh". Each term
+ * remembers the runs of equal keys ("groups") of the sort index it came from.
+ *
+ * A BK-tree files every term under the child whose edge is its edit distance to the parent. A query
+ * that accepts distance k at a node of distance d only has to descend into edges d - k to d + k,
+ * which prunes most of the tree for small k.
+ */
+final class FuzzyIndex extends KeyIndex {
+    // First sort position of each group, plus the end of the index
+    private final int[] groupStart;
+    // Tree nodes: the term, its edit distance to its parent, its first child and its next sibling
+    private final String[] terms;
+    private final int[] edge, firstChild, nextSibling;
+    // Groups each term came from, as a range of termGroups per term
+    private final int[] groupOffsets, termGroups;
+
+    /**
+     * Builds the tree for a sort index.
+     * @param keys keys indexed by card id
+     * @param sorted card ids in key order
+     */
+    FuzzyIndex(String[] keys, int[] sorted) {
+        super(keys, sorted);
+        this.groupStart = groupStarts(keys, sorted);
+        int groups = this.groupStart.length - 1;
+
+        // Map every distinct term to the groups it occurs in, in group order
+        HashMap<String, Integer> termIds = new HashMap<>();
+        String[] terms = new String[16];
+        int[][] termGroupLists = new int[16][];
+        int[] termGroupCounts = new int[16];
+        for (int group = 0; group < groups; group++) {
+            String key = this.key(this.groupStart[group]);
+            String[] words = TokenIndex.split(key);
+            for (int w = -1; w < words.length; w++) {
+                // The whole key first, then its words
+                String term = w < 0 ? key : words[w];
+                if (term.isEmpty() || (w >= 0 && term.equals(key))) {
+                    continue;
+                }
+                Integer termId = termIds.get(term);
+                if (termId == null) {
+                    termId = termIds.size();
+                    termIds.put(term, termId);
+                    if (termId == terms.length) {
+                        terms = Arrays.copyOf(terms, termId * 2);
+                        termGroupLists = Arrays.copyOf(termGroupLists, termId * 2);
+                        termGroupCounts = Arrays.copyOf(termGroupCounts, termId * 2);
+                    }
+                    terms[termId] = term;
+                    termGroupLists[termId] = new int[2];
+                }
+                int count = termGroupCounts[termId];
+                // A word that repeats within a key adds its group once
+                if (count > 0 && termGroupLists[termId][count - 1] == group) {
+                    continue;
+                }
+                if (count == termGroupLists[termId].length) {
+                    termGroupLists[termId] = Arrays.copyOf(termGroupLists[termId], count * 2);
+                }
+                termGroupLists[termId][count] = group;
+                termGroupCounts[termId] = count + 1;
+            }
+        }
+        int termCount = termIds.size();
+        this.terms = Arrays.copyOf(terms, termCount);
+        this.groupOffsets = new int[termCount + 1];
+        for (int t = 0; t < termCount; t++) {
+            this.groupOffsets[t + 1] = this.groupOffsets[t] + termGroupCounts[t];
+        }
+        this.termGroups = new int[this.groupOffsets[termCount]];
+        for (int t = 0; t < termCount; t++) {
+            System.arraycopy(termGroupLists[t], 0, this.termGroups, this.groupOffsets[t], termGroupCounts[t]);
+        }
+
+        // Insert the terms; node i holds term i and node 0 is the root
+        this.edge = new int[termCount];
+        this.firstChild = new int[termCount];
+        this.nextSibling = new int[termCount];
+        Arrays.fill(this.firstChild, -1);
+        Arrays.fill(this.nextSibling, -1);
+        int[][] rows = new int[2][];
+        for (int t = 1; t < termCount; t++) {
+            int node = 0;
+            while (true) {
+                int distance = distance(this.terms[t], this.terms[node], rows);
+                int child = this.firstChild[node];
+                while (child >= 0 && this.edge[child] != distance) {
+                    child = this.nextSibling[child];
+                }
+                if (child < 0) {
+                    this.edge[t] = distance;
+                    this.nextSibling[t] = this.firstChild[node];
+                    this.firstChild[node] = t;
+                    break;
+                }
+                node = child;
+            }
+        }
+    }
+
+    /**
+     * Finds the cards whose key, or a word of it, is within an edit distance of a query.
+     * @param query the cleaned query
+     * @param maxDistance the largest number of inserted, deleted or replaced characters to accept
+     * @return ids of the matching cards, closest first; equally close cards keep sort index order
+     */
+    int[] find(String query, int maxDistance) {
+        if (query.isEmpty() || this.terms.length == 0) {
+            return new int[0];
+        }
+        int groups = this.groupStart.length - 1;
+        // Closest distance of every group reached so far, plus one; zero means not reached
+        int[] closest = new int[groups];
+        int[] reached = new int[16];
+        int reachedCount = 0;
+        int[] stack = new int[16];
+        int depth = 0;
+        stack[depth++] = 0;
+        int[][] rows = new int[2][];
+        while (depth > 0) {
+            int node = stack[--depth];
+            int distance = distance(query, this.terms[node], rows);
+            if (distance <= maxDistance) {
+                for (int i = this.groupOffsets[node]; i < this.groupOffsets[node + 1]; i++) {
+                    int group = this.termGroups[i];
+                    if (closest[group] == 0) {
+                        if (reachedCount == reached.length) {
+                            reached = Arrays.copyOf(reached, reachedCount * 2);
+                        }
+                        reached[reachedCount++] = group;
+                        closest[group] = distance + 1;
+                    } else if (distance + 1 < closest[group]) {
+                        closest[group] = distance + 1;
+                    }
+                }
+            }
+            // By the triangle inequality, matches can only sit under edges within maxDistance of distance
+            for (int child = this.firstChild[node]; child >= 0; child = this.nextSibling[child]) {
+                if (Math.abs(this.edge[child] - distance) <= maxDistance) {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = child;
+                }
+            }
+        }
+
+        // Order the groups by distance, then by their place in the sort index
+        long[] order = new long[reachedCount];
+        int size = 0;
+        for (int i = 0; i < reachedCount; i++) {
+            int group = reached[i];
+            order[i] = ((long) closest[group] << 32) | group;
+            size += this.groupStart[group + 1] - this.groupStart[group];
+        }
+        Arrays.sort(order);
+        int[] result = new int[size];
+        int next = 0;
+        for (long entry : order) {
+            int group = (int) entry;
+            int start = this.groupStart[group], end = this.groupStart[group + 1];
+            System.arraycopy(this.sorted, start, result, next, end - start);
+            next += end - start;
+        }
+        return result;
+    }
+
+    /**
+     * Picks how many typos to tolerate in a query of a given length.
+     * Short queries get none, since a single edit already changes most of them.
+     * @param length the query length
+     * @return the largest edit distance to accept
+     */
+    static int maxDistanceFor(int length) {
+        if (length < 4) {
+            return 0;
+        }
+        return length < 8 ? 1 : 2;
+    }
+
+    /**
+     * Returns the number of terms in the tree, for sizing.
+     * @return the term count
+     */
+    int termCount() {
+        return this.terms.length;
+    }
+
+    /**
+     * Computes the Levenshtein distance between two strings with two rolling rows.
+     * @param a one string
+     * @param b another string
+     * @param rows scratch rows, grown as needed and reused across calls
+     * @return the number of single-character edits turning a into b
+     */
+    private static int distance(String a, String b, int[][] rows) {
+        int n = b.length();
+        if (rows[0] == null || rows[0].length < n + 1) {
+            rows[0] = new int[n + 1];
+            rows[1] = new int[n + 1];
+        }
+        int[] previous = rows[0], current = rows[1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int replace = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[n];
+    }
+}
@@ -34,7 +34,6 @@ public class HomeView extends AppCompatActivity {
     private RecyclerView recentlyRecyclerView;
     private HomeRecyclerViewAdapter recentlyAdapter;
     private ArrayList<Card> ownedCards;
-    private ArrayList<Card> allCards;
     private Button randomCardButton;
     private TextView totalCardsCollectedTextView;
     private TextView totalCardsLoadedTextView;
@@ -78,10 +77,7 @@ public class HomeView extends AppCompatActivity {
             v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
             return insets;
         });
-        Card.initialize(this);
-
-        this.ownedCards = Card.getOwnedCards();
-        this.allCards = Card.getAllCards();
+        Card.initializeAsync(this);
 
         // Update the RecyclerView for Recently Viewed Cards
         this.recentlyRecyclerView = findViewById(R.id.recentlyRecyclerView);
@@ -98,25 +94,35 @@ public class HomeView extends AppCompatActivity {
         this.randomCardButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                // Get the complete list of cards
-                ArrayList<Card> allCards = new ArrayList<>(Card.getAllCards());
-                if (!allCards.isEmpty()) {
+                // Pick from the id column so no card has to be materialized
+                CardStore store = Card.getStore();
+                if (store.size > 0) {
                     // Randomly select a card from the entire dataset
                     Random random = new Random();
-                    Card randomCard = allCards.get(random.nextInt(allCards.size()));
+                    String randomId = store.globalIds[random.nextInt(store.size)];
 
                     // Start the SingleCardActivity with the selected card's global ID
                     Intent intent = new Intent(HomeView.this, SingleCardActivity.class);
-                    intent.putExtra("id", randomCard.globalId);
+                    intent.putExtra("id", randomId);
                     startActivity(intent);
                 }
             }
         });
         this.totalCardsCollectedTextView = findViewById(R.id.totalCardsCollected);
-        updateTotalCardsCollected();
-
         this.totalCardsLoadedTextView = findViewById(R.id.totalCardsLoaded);
-        updateTotalCardsLoaded();
+
+        // Fill in the counters once the catalog has loaded and the owned cards have been listed
+        Card.loadOwnedCards(new Card.OwnedCardsListener() {
+            @Override
+            public void onOwnedCards(ArrayList<Card> cards) {
+                if (HomeView.this.isDestroyed()) {
+                    return;
+                }
+                HomeView.this.ownedCards = cards;
+                updateTotalCardsCollected();
+                updateTotalCardsLoaded();
+            }
+        });
     }
 
     /**
@@ -129,7 +135,7 @@ public class HomeView extends AppCompatActivity {
     }
 
     private void updateTotalCardsLoaded() {
-        int totalCardsLoaded = this.allCards.size();
+        int totalCardsLoaded = Card.getCardCount();
         String text = "\t\t\t\t Cards In\n\t\t\t\tDatabase\n\t\t\t\t #" + totalCardsLoaded;
         this.totalCardsLoadedTextView.setText(text);
     }
@@ -169,7 +175,7 @@ class HomeRecyclerViewAdapter extends RecyclerView.Adapter<HomeRecyclerViewAdapt
 
         // Set the card details to the views in the ViewHolder
         holder.name.setText(current.name);
-        holder.setLogo.setImageDrawable(Card.getLogoById(current.setId));
+        Card.loadLogoInto(holder.setLogo, current.setId);
         holder.artist.setText(current.illustrator);
         holder.set.setText(current.setName);
 
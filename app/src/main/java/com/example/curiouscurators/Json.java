@@ -2,11 +2,11 @@ package com.example.curiouscurators;
 
 import androidx.annotation.NonNull;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Scanner;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 /**
  * Represents a JSON object with functionalities to parse from string,
@@ -22,7 +22,9 @@ public abstract class Json {
      * @throws ParsingException if the input string is not a valid JSON.
      */
     public static Json fromString(String in) throws ParsingException {
-        return parse(in).head;
+        Cursor cursor = new Cursor(in);
+        cursor.parseWhitespace();
+        return parse(cursor);
     }
 
     /**
@@ -83,22 +85,23 @@ public abstract class Json {
 
     /**
      * Default constructor initializing children of this Json object.
+     * Children keep their insertion order so arrays iterate in index order.
      */
     Json() {
-        this.children = new HashMap<String, Json>();
+        this.children = new LinkedHashMap<String, Json>();
     }
 
     /**
-     * Parses a JSON string and returns a Json object along with unparsed remainder of the string.
-     * @param in JSON string to parse.
-     * @return A parse containing the Json object and any remaining unparsed string.
-     * @throws ParsingException if the string cannot be parsed into any known Json structure.
+     * Parses a JSON value starting at the cursor position and leaves the cursor just past it.
+     * @param in Cursor over the JSON text to parse.
+     * @return The parsed Json object.
+     * @throws ParsingException if the text cannot be parsed into any known Json structure.
      */
-    static Parse<Json, String> parse(String in) throws ParsingException {
-        if (in.isEmpty()) {
-            throw new ParsingException(in);
+    static Json parse(Cursor in) throws ParsingException {
+        if (in.atEnd()) {
+            throw new ParsingException(in.remainder());
         }
-        char first = in.charAt(0);
+        char first = in.peek();
         if (first == '{') {
             return Map.parse(in);
         } else if (first == '[') {
@@ -122,6 +125,9 @@ public abstract class Json {
      * Handles the parsing and represents a basic JSON value (non-composite type).
      */
     private static class Value extends Json {
+        // Shared empty value handed out for missing keys
+        private static final Value NIL = new Value("");
+
         private final String value;
 
         /**
@@ -135,17 +141,17 @@ public abstract class Json {
          * @return Json object representing a nil value.
          */
         static Json nil() {
-            return new Value("");
+            return NIL;
         }
 
         /**
-         * Parses a JSON value from a string.
-         * @param in String to parse.
-         * @return Parse object containing the created Json value and the remaining string.
+         * Parses a JSON value at the cursor.
+         * @param in Cursor to parse from.
+         * @return The created Json value.
+         * @throws ParsingException if the value is unterminated.
          */
-        static Parse<Json, String> parse(String in) {
-            Parse<String, String> tup = Parse.parseString(in);
-            return new Parse<Json, String>(new Value(tup.head), tup.tail);
+        static Json parse(Cursor in) throws ParsingException {
+            return new Value(in.parseString());
         }
 
         @NonNull
@@ -161,55 +167,41 @@ public abstract class Json {
         private Map() { super(); }
 
         /**
-         * Parses a string into a JSON Map object.
-         * @param in the string to parse
-         * @return a Parse object containing the Map and the remainder of the string
-         * @throws ParsingException if the input string does not properly represent a JSON Map
+         * Parses a JSON Map object at the cursor.
+         * @param in the cursor to parse from
+         * @return the parsed Map
+         * @throws ParsingException if the input does not properly represent a JSON Map
          */
-        static Parse<Json, String> parse(String in) throws ParsingException {
+        static Json parse(Cursor in) throws ParsingException {
             Map map = new Map();
-            Parse<Boolean, String> t1;
-            Parse<String, String> t2;
-            Parse<Json, String> t3;
-            t1 = Parse.parseChar(in, '{');
-            if (!t1.head) {
-                throw new ParsingException(in);
+            if (!in.parseChar('{')) {
+                throw new ParsingException(in.remainder());
             }
-            String contents = t1.tail;
-            while (!contents.isEmpty() && contents.charAt(0) != '}') {
+            in.parseWhitespace();
+            while (!in.atEnd() && in.peek() != '}') {
                 /**
                  * Expects a JSON object with key-value pairs where:
                  * Key is a (possibly quoted) literal string.
                  * Value can be any valid JSON data type.
                  * Note: there is no trailing comma allowed after the last element
                  */
-                contents = Parse.parseWhitespace(contents).tail;
-                t2 = Parse.parseString(contents);
-                String key = t2.head;
-                contents = t2.tail;
-                contents = Parse.parseWhitespace(contents).tail;
-                t1 = Parse.parseChar(contents, ':');
-                if (!t1.head) {
-                    throw new ParsingException(in);
+                in.parseWhitespace();
+                String key = in.parseString();
+                in.parseWhitespace();
+                if (!in.parseChar(':')) {
+                    throw new ParsingException(in.remainder());
                 }
-                contents = t1.tail;
-                contents = Parse.parseWhitespace(contents).tail;
-                t3 = Json.parse(contents);
-                map.addChild(key, t3.head);
-                contents = t3.tail;
-                contents = Parse.parseWhitespace(contents).tail;
-                t1 = Parse.parseChar(contents, ',');
-                contents = t1.tail;
-                if (!t1.head) {
+                in.parseWhitespace();
+                map.addChild(key, Json.parse(in));
+                in.parseWhitespace();
+                if (!in.parseChar(',')) {
                     break;
                 }
             }
-            t1 = Parse.parseChar(contents, '}');
-            if (!t1.head) {
-                throw new ParsingException(in);
+            if (!in.parseChar('}')) {
+                throw new ParsingException(in.remainder());
             }
-            contents = t1.tail;
-            return new Parse<Json, String>(map, contents);
+            return map;
         }
     }
 
@@ -220,41 +212,31 @@ public abstract class Json {
         private Array() { super(); }
 
         /**
-         * Parses a string into a JSON Array object.
-         * @param in the string to parse
-         * @return a Parse object containing the Array and the remainder of the string
-         * @throws ParsingException if the input string does not properly represent a JSON Array
+         * Parses a JSON Array object at the cursor.
+         * @param in the cursor to parse from
+         * @return the parsed Array
+         * @throws ParsingException if the input does not properly represent a JSON Array
          */
-        static Parse<Json, String> parse(String in) throws ParsingException {
+        static Json parse(Cursor in) throws ParsingException {
             Array array = new Array();
-            Parse<Boolean, String> t1;
-            Parse<String, String> t2;
-            Parse<Json, String> t3;
-            t1 = Parse.parseChar(in, '[');
-            if (!t1.head) {
-                throw new ParsingException(in);
+            if (!in.parseChar('[')) {
+                throw new ParsingException(in.remainder());
             }
-            String contents = t1.tail;
+            in.parseWhitespace();
             int index = 0;
-            while (!contents.isEmpty() && contents.charAt(0) != ']') {
-                contents = Parse.parseWhitespace(contents).tail;
-                t3 = Json.parse(contents);
-                array.addChild(Integer.toString(index), t3.head);
+            while (!in.atEnd() && in.peek() != ']') {
+                in.parseWhitespace();
+                array.addChild(Integer.toString(index), Json.parse(in));
                 index += 1;
-                contents = t3.tail;
-                contents = Parse.parseWhitespace(contents).tail;
-                t1 = Parse.parseChar(contents, ',');
-                contents = t1.tail;
-                if (!t1.head) {
+                in.parseWhitespace();
+                if (!in.parseChar(',')) {
                     break;
                 }
             }
-            t1 = Parse.parseChar(contents, ']');
-            if (!t1.head) {
-                throw new ParsingException(in);
+            if (!in.parseChar(']')) {
+                throw new ParsingException(in.remainder());
             }
-            contents = t1.tail;
-            return new Parse<Json, String>(array, contents);
+            return array;
         }
 
         @NonNull
@@ -280,159 +262,404 @@ public abstract class Json {
     }
 
     /**
-     * A utility class to handle parsing operations.
-     * @param <A> Type of the object that is parsed.
-     * @param <B> Type of the remaining part after parsing.
+     * A pull parser that walks JSON one token at a time without building a tree.
+     * Callers open and close containers explicitly and pick out the values they care about,
+     * skipping everything else with {@link #skipValue()}.
      */
-    private static class Parse<A, B> {
+    public static class Reader {
+        /**
+         * The kinds of token that can come next in the input.
+         */
+        public enum Token {
+            BeginObject, EndObject, BeginArray, EndArray, Value, End
+        }
 
-        private static final char[] WHITESPACE = {' ', '\r', '\n', '\t'};
+        private final Cursor in;
+        // Whether each open container has had a member yet, innermost last; only the first depth entries are used
+        private boolean[] started = new boolean[8];
+        private int depth = 0;
 
-        public final A head;
-        public final B tail;
+        /**
+         * Constructs a reader positioned at the start of the input.
+         * @param in the JSON text to read
+         */
+        public Reader(CharSequence in) {
+            this.in = new Cursor(in);
+        }
 
         /**
-         * Constructs a new Parse object with parsed head and remaining tail.
-         * @param a the parsed object
-         * @param b the remaining string after parsing
+         * Looks at the kind of the next token without consuming it.
+         * @return the next token type.
          */
-        public Parse(A a, B b) {
-            this.head = a;
-            this.tail = b;
+        public Token peek() {
+            this.in.parseWhitespace();
+            if (this.in.atEnd()) {
+                return Token.End;
+            }
+            switch (this.in.peek()) {
+                case '{': return Token.BeginObject;
+                case '}': return Token.EndObject;
+                case '[': return Token.BeginArray;
+                case ']': return Token.EndArray;
+                default: return Token.Value;
+            }
         }
 
         /**
-         * Checks if a character is whitespace.
-         * @param test the character to check
-         * @return true if the character is a whitespace; otherwise, false.
+         * Consumes the opening brace of an object.
+         * @throws ParsingException if the next token is not an object.
          */
-        private static boolean isWhitespace(char test) {
-            for (char c : WHITESPACE) {
-                if (c == test) {
-                    return true;
+        public void beginObject() throws ParsingException {
+            this.expect('{');
+            this.open();
+        }
+
+        /**
+         * Consumes the closing brace of an object.
+         * @throws ParsingException if the object has unread members.
+         */
+        public void endObject() throws ParsingException {
+            this.expect('}');
+            this.close();
+        }
+
+        /**
+         * Consumes the opening bracket of an array.
+         * @throws ParsingException if the next token is not an array.
+         */
+        public void beginArray() throws ParsingException {
+            this.expect('[');
+            this.open();
+        }
+
+        /**
+         * Consumes the closing bracket of an array.
+         * @throws ParsingException if the array has unread elements.
+         */
+        public void endArray() throws ParsingException {
+            this.expect(']');
+            this.close();
+        }
+
+        /**
+         * Checks whether the current object or array has another member,
+         * consuming the separating comma if there is one.
+         * @return true if another name (in an object) or value (in an array) follows.
+         * @throws ParsingException if a comma comes before the first member, or none comes between two.
+         */
+        public boolean hasNext() throws ParsingException {
+            boolean started = this.depth > 0 && this.started[this.depth - 1];
+            this.in.parseWhitespace();
+            boolean comma = this.in.parseChar(',');
+            if (comma) {
+                if (!started) {
+                    throw new ParsingException(this.in.remainder());
                 }
+                this.in.parseWhitespace();
             }
-            return false;
+            if (this.in.atEnd()) {
+                return false;
+            }
+            char next = this.in.peek();
+            if (next == '}' || next == ']') {
+                return false;
+            }
+            if (started && !comma) {
+                throw new ParsingException(this.in.remainder());
+            }
+            if (this.depth > 0) {
+                this.started[this.depth - 1] = true;
+            }
+            return true;
         }
 
         /**
-         * Checks if a character is alphanumeric, i.e., a letter (a-z, A-Z) or a digit (0-9).
-         *
-         * @param test The character to test.
-         * @return true if the character is alphanumeric, false otherwise.
+         * Reads the name of the next object member along with its colon.
+         * @return the member name.
+         * @throws ParsingException if no name and colon follow.
          */
-        private static boolean isAlphaNumeric(char test) {
-            return ((test >= 'a' && test <= 'z') ||
-                    (test >= 'A' && test <= 'Z') ||
-                    (test >= '0' && test <= '9'));
+        public String nextName() throws ParsingException {
+            this.in.parseWhitespace();
+            String name = this.in.parseString();
+            this.expect(':');
+            return name;
         }
 
         /**
-         * Parses leading whitespace characters from the input string and returns
-         * the whitespace substring and the remainder of the input.
-         *
-         * @param in The input string to parse.
-         * @return A Parse object containing the parsed whitespace and the remainder of the string.
+         * Reads a string, number or literal value as text.
+         * @return the value as it would be returned by {@link Json#value()}.
+         * @throws ParsingException if the next token is an object or array.
          */
-        public static Parse<String, String> parseWhitespace(String in) {
-            int index = 0;
-            for (int i = 0; i < in.length(); i++) {
-                char character = in.charAt(i);
-                if (isWhitespace(character)) {
-                    index = i + 1;
-                } else {
-                    break;
+        public String nextString() throws ParsingException {
+            if (this.peek() != Token.Value) {
+                throw new ParsingException(this.in.remainder());
+            }
+            return this.in.parseString();
+        }
+
+        /**
+         * Reads an array of plain values into a list.
+         * A plain value in place of the array (such as {@code null}) is skipped and reads as empty.
+         * @param into list receiving the values in order
+         * @throws ParsingException if the next token is not an array of values.
+         */
+        public void nextStrings(List<String> into) throws ParsingException {
+            if (this.peek() == Token.Value) {
+                this.in.parseString();
+                return;
+            }
+            this.beginArray();
+            while (this.hasNext()) {
+                into.add(this.nextString());
+            }
+            this.endArray();
+        }
+
+        /**
+         * Skips the next value, including any nested objects and arrays.
+         * @throws ParsingException if the value is malformed.
+         */
+        public void skipValue() throws ParsingException {
+            Token token = this.peek();
+            if (token == Token.Value) {
+                this.in.parseString();
+                return;
+            }
+            if (token != Token.BeginObject && token != Token.BeginArray) {
+                throw new ParsingException(this.in.remainder());
+            }
+            int depth = 0;
+            do {
+                char next = this.in.peek();
+                if (next == '"' || next == '\'') {
+                    this.in.parseQuotedString();
+                    continue;
+                }
+                if (next == '{' || next == '[') {
+                    depth++;
+                } else if (next == '}' || next == ']') {
+                    depth--;
                 }
+                this.in.parseChar(next);
+            } while (depth > 0 && !this.in.atEnd());
+            if (depth > 0) {
+                throw new ParsingException(this.in.remainder());
             }
+        }
 
-            return new Parse<>(in.substring(0, index), in.substring(index));
+        /**
+         * Records that a container was opened and has no members yet.
+         */
+        private void open() {
+            if (this.depth == this.started.length) {
+                this.started = Arrays.copyOf(this.started, this.depth * 2);
+            }
+            this.started[this.depth++] = false;
         }
 
         /**
-         * Parses the specified character from the beginning of the input string if it matches.
-         *
-         * @param in   The input string to parse.
-         * @param test The character to match at the start of the string.
-         * @return A Parse object containing a boolean indicating success or failure,
-         *         and the remainder of the string after the matched character.
+         * Records that the innermost container was closed.
          */
-        public static Parse<Boolean, String> parseChar(String in, char test) {
-            if (!in.isEmpty() && in.charAt(0) == test) {
-                return new Parse<>(true, in.substring(1));
-            } else {
-                return new Parse<>(false, in);
+        private void close() {
+            if (this.depth > 0) {
+                this.depth--;
             }
         }
 
         /**
-         * Parses a quoted string (enclosed within either single or double quotes) from the input string.
-         * Handles escaped characters within the quotes.
+         * Consumes an expected punctuation character, skipping whitespace before it.
+         * @param expected the character that must come next
+         * @throws ParsingException if a different character follows.
+         */
+        private void expect(char expected) throws ParsingException {
+            this.in.parseWhitespace();
+            if (!this.in.parseChar(expected)) {
+                throw new ParsingException(this.in.remainder());
+            }
+        }
+    }
+
+    /**
+     * A read position over a single JSON input.
+     * Every parsing step advances the index in place, so nothing is copied
+     * except the strings that end up as keys and values.
+     */
+    static class Cursor {
+        // How much of the remaining input to report when parsing fails
+        private static final int ERROR_CONTEXT = 40;
+
+        private final CharSequence in;
+        private final int end;
+        private int position;
+
+        /**
+         * Constructs a cursor positioned at the start of the input.
+         * @param in the JSON text to walk
+         */
+        Cursor(CharSequence in) {
+            this.in = in;
+            this.end = in.length();
+            this.position = 0;
+        }
+
+        /**
+         * Checks whether the whole input has been consumed.
+         * @return true if there are no characters left.
+         */
+        boolean atEnd() {
+            return this.position >= this.end;
+        }
+
+        /**
+         * Returns the character at the cursor without consuming it.
+         * @return the next character.
+         */
+        char peek() {
+            return this.in.charAt(this.position);
+        }
+
+        /**
+         * Returns a short excerpt of the unparsed input, for error messages.
+         * @return up to {@code ERROR_CONTEXT} characters starting at the cursor.
+         */
+        String remainder() {
+            int stop = Integer.min(this.end, this.position + ERROR_CONTEXT);
+            return this.in.subSequence(Integer.min(this.position, stop), stop).toString();
+        }
+
+        /**
+         * Checks if a character is whitespace.
+         * @param test the character to check
+         * @return true if the character is a whitespace; otherwise, false.
+         */
+        private static boolean isWhitespace(char test) {
+            return test == ' ' || test == '\r' || test == '\n' || test == '\t';
+        }
+
+        /**
+         * Checks if a character ends an unquoted literal, i.e. it is whitespace or JSON punctuation.
          *
-         * @param in The input string to parse.
-         * @return A Parse object containing the extracted string and the remainder of the input after the closing quote.
+         * @param test The character to test.
+         * @return true if the character terminates a literal, false otherwise.
          */
-        public static Parse<String, String> parseQuotedString(String in) {
-            if (in.isEmpty()) {
-                return new Parse<>("", in);
+        private static boolean isDelimiter(char test) {
+            return isWhitespace(test) || test == ',' || test == ':' ||
+                    test == '}' || test == ']' || test == '{' || test == '[';
+        }
+
+        /**
+         * Skips leading whitespace characters.
+         */
+        void parseWhitespace() {
+            while (this.position < this.end && isWhitespace(this.in.charAt(this.position))) {
+                this.position++;
             }
+        }
 
-            char quote_type = ' ';
-            if (in.charAt(0) == '"') {
-                quote_type = '"';
-            } else if (in.charAt(0) == '\'') {
-                quote_type = '\'';
-            } else {
-                return new Parse<>("", in);
+        /**
+         * Consumes the specified character if it is next in the input.
+         *
+         * @param test The character to match at the cursor.
+         * @return true if the character matched and was consumed, false otherwise.
+         */
+        boolean parseChar(char test) {
+            if (this.position < this.end && this.in.charAt(this.position) == test) {
+                this.position++;
+                return true;
             }
+            return false;
+        }
 
-            int index = 0;
-            for (int i = 1; i < in.length(); i++) {
-                char character = in.charAt(i);
-                index = i;
+        /**
+         * Parses a quoted string (enclosed within either single or double quotes).
+         * Escape sequences are decoded; strings without escapes are cut straight from the input.
+         *
+         * @return The extracted string, without its quotes.
+         * @throws ParsingException if the closing quote is missing.
+         */
+        String parseQuotedString() throws ParsingException {
+            char quoteType = this.in.charAt(this.position);
+            int start = this.position + 1;
+            StringBuilder decoded = null;
+            int i = start;
+            while (i < this.end) {
+                char character = this.in.charAt(i);
+                if (character == quoteType) {
+                    this.position = i + 1;
+                    if (decoded == null) {
+                        return this.in.subSequence(start, i).toString();
+                    }
+                    return decoded.append(this.in, start, i).toString();
+                }
                 if (character == '\\') { // Handle escape sequences
-                    i += 2;
+                    if (i + 1 >= this.end) {
+                        break;
+                    }
+                    if (decoded == null) {
+                        decoded = new StringBuilder(i - start + 16);
+                    }
+                    decoded.append(this.in, start, i);
+                    i = this.parseEscape(i + 1, decoded);
+                    start = i;
                     continue;
                 }
-                if (character == quote_type) {
-                    break;
-                }
+                i++;
             }
-            return new Parse<>(in.substring(1, index), in.substring(index + 1));
+            this.position = this.end;
+            throw new ParsingException(this.in.subSequence(start - 1, this.end).toString());
         }
 
         /**
-         * Parses an alphanumeric string from the input.
-         *
-         * @param in The input string to parse.
-         * @return A Parse object containing the parsed alphanumeric string and the remainder of the input.
+         * Decodes the escape sequence whose code starts at {@code at} into {@code out}.
+         * @param at index of the character following the backslash
+         * @param out builder receiving the decoded character
+         * @return index of the first character after the escape sequence
          */
-        public static Parse<String, String> parseString(String in) {
-            if (!in.isEmpty() && (in.charAt(0) == '\'' || in.charAt(0) == '"')) {
-                return parseQuotedString(in);
-            }
-            int index = 0;
-            for (int i = 1; i < in.length(); i++) {
-                char character = in.charAt(i);
-                index = i;
-                if (!isAlphaNumeric(character)) {
+        private int parseEscape(int at, StringBuilder out) {
+            char code = this.in.charAt(at);
+            switch (code) {
+                case 'n': out.append('\n'); break;
+                case 't': out.append('\t'); break;
+                case 'r': out.append('\r'); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'u':
+                    if (at + 4 < this.end) {
+                        try {
+                            int point = Integer.parseInt(this.in.subSequence(at + 1, at + 5).toString(), 16);
+                            out.append((char) point);
+                            return at + 5;
+                        } catch (NumberFormatException e) {
+                            // Not a valid code point, keep the raw character instead
+                        }
+                    }
+                    out.append(code);
                     break;
-                }
+                default: // \" \' \\ \/ and anything unknown map to the character itself
+                    out.append(code);
             }
-            return new Parse<>(in.substring(0, index), in.substring(index));
+            return at + 1;
         }
 
         /**
-         * Parses a key from the input string up to the next dot or the end of the string.
+         * Parses a string value: either a quoted string or a bare literal such as a number,
+         * {@code true} or {@code null}.
          *
-         * @param in The input string to parse.
-         * @return A Parse object containing the key and the remainder of the input after the dot.
+         * @return The parsed string.
+         * @throws ParsingException if a quoted string is unterminated.
          */
-        public static Parse<String, String> parseKey(String in) {
-            int dot = in.indexOf('.');
-            if (dot == -1) {
-                dot = in.length();
+        String parseString() throws ParsingException {
+            if (this.position < this.end) {
+                char first = this.in.charAt(this.position);
+                if (first == '"' || first == '\'') {
+                    return this.parseQuotedString();
+                }
+            }
+            int start = this.position;
+            while (this.position < this.end && !isDelimiter(this.in.charAt(this.position))) {
+                this.position++;
             }
-            return new Parse<>(in.substring(0, dot), in.substring(dot));
+            return this.in.subSequence(start, this.position).toString();
         }
     }
 }
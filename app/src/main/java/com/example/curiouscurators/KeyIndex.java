@@ -0,0 +1,51 @@
+package com.example.curiouscurators;
+
+import java.util.Arrays;
+
+/**
+ * Base of the search indexes built over one sort index of the {@link CardStore}: the keys by card id,
+ * the card ids in key order, and the runs of equal keys ("groups") that the indexes work on, since
+ * equal keys sit next to each other in a sort index.
+ */
+abstract class KeyIndex {
+    // Keys indexed by card id, and card ids in key order
+    final String[] keys;
+    final int[] sorted;
+
+    /**
+     * Constructs an index over a sort index.
+     * @param keys keys indexed by card id
+     * @param sorted card ids in key order
+     */
+    KeyIndex(String[] keys, int[] sorted) {
+        this.keys = keys;
+        this.sorted = sorted;
+    }
+
+    /**
+     * Returns the key at a sort position.
+     * @param position a position in the sort index
+     * @return the key of the card at that position
+     */
+    final String key(int position) {
+        return this.keys[this.sorted[position]];
+    }
+
+    /**
+     * Splits a sort index into runs of equal keys.
+     * @param keys keys indexed by card id
+     * @param sorted card ids in key order
+     * @return the first sort position of each group, plus the end of the index
+     */
+    static int[] groupStarts(String[] keys, int[] sorted) {
+        int[] groupStart = new int[sorted.length + 1];
+        int groups = 0;
+        for (int position = 0; position < sorted.length; position++) {
+            if (position == 0 || !keys[sorted[position]].equals(keys[sorted[position - 1]])) {
+                groupStart[groups++] = position;
+            }
+        }
+        groupStart[groups] = sorted.length;
+        return Arrays.copyOf(groupStart, groups + 1);
+    }
+}
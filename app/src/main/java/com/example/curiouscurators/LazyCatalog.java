@@ -0,0 +1,79 @@
+package com.example.curiouscurators;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Card lookups backed by a mapped catalog snapshot instead of fully built cards.
+ * Cards are addressed by their dense {@link CardStore} id, which is also their snapshot record
+ * number; a card is decoded from its record the first time it is asked for, and a bounded number
+ * of recently used cards are kept around.
+ *
+ * Only whole cards are on demand. The {@link CardStore} columns, search keys and sort indexes stay
+ * resident, since every list row and every search reads them; their strings are shared through the
+ * snapshot's string table, so each distinct value is held once.
+ */
+final class LazyCatalog {
+    private final CatalogSnapshot snapshot;
+    // Recently used cards by id, least recently used first
+    private final LinkedHashMap<Integer, Card> recent;
+
+    /**
+     * Constructs a lazy catalog over a snapshot.
+     * @param snapshot the mapped snapshot to decode cards from
+     * @param capacity maximum number of decoded cards to keep
+     */
+    LazyCatalog(CatalogSnapshot snapshot, final int capacity) {
+        this.snapshot = snapshot;
+        this.recent = new LinkedHashMap<Integer, Card>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Card> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of cards in the catalog.
+     * @return the card count
+     */
+    int size() {
+        return this.snapshot.cardCount();
+    }
+
+    /**
+     * Retrieves a card, decoding it from the snapshot if it is not cached.
+     * @param id the card id
+     * @return the card
+     */
+    synchronized Card get(int id) {
+        Card card = this.recent.get(id);
+        if (card == null) {
+            card = this.snapshot.card(id);
+            this.recent.put(id, card);
+        }
+        return card;
+    }
+
+    /**
+     * Reads the free text of a card from its record, without decoding the card or filling the cache.
+     * @param id the card id
+     * @return the text, as {@link CatalogDatabase#bodyText(Card)} gives it
+     */
+    String bodyText(int id) {
+        return this.snapshot.bodyText(id);
+    }
+
+    /**
+     * Decodes every card in catalog order, without filling the cache.
+     * @return all cards
+     */
+    ArrayList<Card> getAll() {
+        ArrayList<Card> cards = new ArrayList<>(this.snapshot.cardCount());
+        for (int i = 0; i < this.snapshot.cardCount(); i++) {
+            cards.add(this.snapshot.card(i));
+        }
+        return cards;
+    }
+}
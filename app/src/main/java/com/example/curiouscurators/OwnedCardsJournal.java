@@ -0,0 +1,240 @@
+package com.example.curiouscurators;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Crash-safe persistence of the owned card set as a snapshot plus an append-only journal.
+ * Every batch of ownership changes appends one {@code +id} or {@code -id} line per card to {@code owned.journal};
+ * once enough lines pile up, the whole set is written to {@code owned.csv} on a background thread
+ * and the journal is cut back to the changes made since.
+ *
+ * Replaying the journal onto the snapshot is idempotent, because each line sets an id to a state
+ * rather than toggling it. A crash between replacing the snapshot and trimming the journal therefore
+ * only replays changes the snapshot already has. A line cut short by a crash has no trailing newline
+ * and is ignored.
+ */
+final class OwnedCardsJournal {
+    private static final String TAG = "OwnedCardsJournal";
+    static final String SNAPSHOT = "owned.csv";
+    static final String JOURNAL = "owned.journal";
+    // Number of journal lines after which the set is compacted into the snapshot
+    private static final int COMPACT_AFTER = 512;
+
+    // Directory holding the snapshot and the journal
+    private final File directory;
+    // Open journal, appended to by every change
+    private FileOutputStream journal = null;
+    // Lines in the journal, including ones replayed at startup
+    private int entries = 0;
+    // Whether a compaction is running
+    private boolean compacting = false;
+    // Appends made while a compaction runs, which the trimmed journal has to keep
+    private final StringBuilder sinceCompaction = new StringBuilder();
+    // Number of lines in sinceCompaction
+    private int linesSinceCompaction = 0;
+
+    /**
+     * Constructs a journal over the app's private files.
+     * @param context the application context
+     */
+    OwnedCardsJournal(Context context) {
+        this(context.getFilesDir());
+    }
+
+    /**
+     * Constructs a journal over the files in a directory.
+     * @param directory where the snapshot and the journal are kept
+     */
+    OwnedCardsJournal(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads the snapshot and replays the journal on top of it.
+     * @return the ids of every owned card, including ones that no longer exist in the catalog
+     */
+    synchronized HashSet<String> replay() {
+        HashSet<String> owned = new HashSet<>();
+        String snapshot = this.readFile(SNAPSHOT);
+        if (snapshot != null) {
+            for (String id : snapshot.strip().split(",")) {
+                if (!id.isEmpty()) {
+                    owned.add(id);
+                }
+            }
+        }
+        String journal = this.readFile(JOURNAL);
+        this.entries = 0;
+        if (journal != null) {
+            int start = 0, end;
+            // Only complete lines count; a trailing fragment was cut short by a crash
+            while ((end = journal.indexOf('\n', start)) >= 0) {
+                String line = journal.substring(start, end);
+                start = end + 1;
+                if (line.length() < 2) {
+                    continue;
+                }
+                if (line.charAt(0) == '+') {
+                    owned.add(line.substring(1));
+                } else if (line.charAt(0) == '-') {
+                    owned.remove(line.substring(1));
+                } else {
+                    continue;
+                }
+                this.entries++;
+            }
+            if (start < journal.length()) {
+                Log.w(TAG, "Ignoring a partial journal line");
+                // Rewrite the journal so later appends do not run on from the fragment
+                this.rewriteJournal(journal.substring(0, start));
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * Records changes of ownership with a single append.
+     * Compaction is started in the background once the journal is long enough.
+     * @param changes the new state of each changed card, in the order to apply them
+     * @param current the full owned set after the changes; copied if a compaction starts
+     */
+    synchronized void record(Map<String, Boolean> changes, Set<String> current) {
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+            lines.append(change.getValue() ? '+' : '-').append(change.getKey()).append('\n');
+        }
+        try {
+            if (this.journal == null) {
+                this.journal = new FileOutputStream(new File(this.directory, JOURNAL), true);
+            }
+            this.journal.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.e(TAG, "Journal append failed: " + e);
+            return;
+        }
+        this.entries += changes.size();
+        if (this.compacting) {
+            this.sinceCompaction.append(lines);
+            this.linesSinceCompaction += changes.size();
+        } else if (this.entries >= COMPACT_AFTER) {
+            this.compact(new HashSet<>(current));
+        }
+    }
+
+    /**
+     * Writes a copy of the owned set to the snapshot on a background thread.
+     * @param owned the owned set at the current end of the journal
+     */
+    private void compact(final HashSet<String> owned) {
+        this.compacting = true;
+        this.sinceCompaction.setLength(0);
+        this.linesSinceCompaction = 0;
+        Thread compactor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                OwnedCardsJournal.this.writeSnapshot(owned);
+            }
+        }, "owned-compactor");
+        compactor.setPriority(Thread.MIN_PRIORITY);
+        compactor.start();
+    }
+
+    /**
+     * Replaces the snapshot, then trims the journal to the lines appended since the copy was taken.
+     * @param owned the owned set to store
+     */
+    private void writeSnapshot(HashSet<String> owned) {
+        boolean replaced = this.replaceFile(SNAPSHOT, String.join(",", owned));
+        synchronized (this) {
+            if (replaced) {
+                this.rewriteJournal(this.sinceCompaction.toString());
+                this.entries = this.linesSinceCompaction;
+            }
+            this.sinceCompaction.setLength(0);
+            this.compacting = false;
+        }
+    }
+
+    /**
+     * Closes the journal; the next change reopens it.
+     */
+    synchronized void close() {
+        if (this.journal != null) {
+            try {
+                this.journal.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Journal close failed: " + e);
+            }
+            this.journal = null;
+        }
+    }
+
+    /**
+     * Replaces the journal with the given lines. Must be called with the lock held.
+     * @param lines the complete new journal contents
+     */
+    private void rewriteJournal(String lines) {
+        this.close();
+        this.replaceFile(JOURNAL, lines);
+    }
+
+    /**
+     * Atomically replaces a private file: the new contents are synced to a temporary file first.
+     * @param name the file name
+     * @param contents the new contents
+     * @return true if the file was replaced
+     */
+    private boolean replaceFile(String name, String contents) {
+        File file = new File(this.directory, name);
+        File temp = new File(this.directory, name + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(contents.getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "File write failed: " + e);
+            temp.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Reads a whole private file.
+     * @param name the file name
+     * @return the contents, or null if the file does not exist or cannot be read
+     */
+    private String readFile(String name) {
+        try (InputStream in = new FileInputStream(new File(this.directory, name))) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                data.write(buffer, 0, read);
+            }
+            return new String(data.toByteArray(), StandardCharsets.UTF_8);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read " + name + ": " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.curiouscurators;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue between ownership changes and the {@link OwnedCardsJournal}.
+ * Changes are queued in memory and written by a single background thread a short while after the
+ * first one, so a burst of taps becomes one append. Only the last state of each card in a burst is
+ * kept, and a card toggled back to its stored state is not written at all.
+ * When a {@link CatalogDatabase} is attached, its owned table is kept in step with the journal.
+ */
+final class OwnedCardsWriter {
+    // How long a change may wait for others before it is written
+    private static final long COALESCE_MILLIS = 300;
+
+    private final OwnedCardsJournal journal;
+    // Owned ids as stored on disk; only touched on the writer thread
+    private final HashSet<String> stored;
+    // Latest queued state of each changed card, in the order the cards were first changed
+    private LinkedHashMap<String, Boolean> pending = new LinkedHashMap<>();
+    // Changes taken from pending that the writer thread has not finished writing
+    private LinkedHashMap<String, Boolean> inFlight = new LinkedHashMap<>();
+    // Database whose owned table mirrors the journal, or null; only touched on the writer thread
+    private CatalogDatabase database = null;
+    // Whether a delayed write is already scheduled
+    private boolean scheduled = false;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "owned-writer");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            OwnedCardsWriter.this.drain();
+        }
+    };
+
+    /**
+     * Constructs a writer over a journal.
+     * @param journal the journal to append to
+     * @param stored the owned ids the journal currently replays to; the writer takes ownership
+     */
+    OwnedCardsWriter(OwnedCardsJournal journal, HashSet<String> stored) {
+        this.journal = journal;
+        this.stored = stored;
+    }
+
+    /**
+     * Queues a change of ownership without touching disk.
+     * @param globalId the card that changed
+     * @param owned whether it is now owned
+     */
+    synchronized void set(String globalId, boolean owned) {
+        this.pending.put(globalId, owned);
+        if (!this.scheduled) {
+            this.scheduled = true;
+            this.writer.schedule(this.drain, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes queued changes now instead of waiting, still on the writer thread.
+     * @return a future that completes once everything queued so far is written
+     */
+    Future<?> flush() {
+        return this.writer.submit(this.drain);
+    }
+
+    /**
+     * Starts mirroring the owned set into a database, beginning with a full copy.
+     * @param database the database to keep in step
+     * @param attached run on the writer thread once the copy is in the database, so readers can start using it
+     */
+    void attachDatabase(final CatalogDatabase database, final Runnable attached) {
+        this.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                database.replaceOwned(OwnedCardsWriter.this.stored);
+                OwnedCardsWriter.this.database = database;
+                attached.run();
+            }
+        });
+    }
+
+    /**
+     * Returns the changes that may not have reached the journal and database yet.
+     * Overlaying them on what the database returns gives the current owned set.
+     * @return the latest state of each unwritten change
+     */
+    synchronized Map<String, Boolean> unwritten() {
+        LinkedHashMap<String, Boolean> changes = new LinkedHashMap<>(this.inFlight);
+        changes.putAll(this.pending);
+        return changes;
+    }
+
+    /**
+     * Takes the queued changes and appends the ones that differ from what is stored.
+     * Runs on the writer thread.
+     */
+    private void drain() {
+        LinkedHashMap<String, Boolean> changes;
+        synchronized (this) {
+            changes = this.pending;
+            this.inFlight = changes;
+            this.pending = new LinkedHashMap<>();
+            this.scheduled = false;
+        }
+        LinkedHashMap<String, Boolean> effective = new LinkedHashMap<>();
+        for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+            String globalId = change.getKey();
+            boolean owned = change.getValue();
+            if (owned ? this.stored.add(globalId) : this.stored.remove(globalId)) {
+                effective.put(globalId, owned);
+            }
+        }
+        if (!effective.isEmpty()) {
+            this.journal.record(effective, this.stored);
+            if (this.database != null) {
+                this.database.setOwned(effective);
+            }
+        }
+        synchronized (this) {
+            this.inFlight = new LinkedHashMap<>();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.curiouscurators;
+
+import java.util.Arrays;
+
+/**
+ * Building blocks of the posting lists of the search indexes: a growable int list to collect postings
+ * in, and base-128 varints to store them back to back in one byte array. Each varint holds 7 bits per
+ * byte, low group first, with the high bit marking that another byte follows, so small gaps take a
+ * single byte.
+ */
+final class Postings {
+    /**
+     * Int list used while collecting postings.
+     */
+    static final class IntList {
+        int[] values = new int[4];
+        int size = 0;
+
+        void add(int value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+    }
+
+    /**
+     * Byte array that varints are appended to.
+     */
+    static final class Writer {
+        private byte[] bytes = new byte[64];
+        private int length = 0;
+
+        /**
+         * Appends a non-negative int.
+         * @param value the value
+         */
+        void writeVarint(int value) {
+            // A varint needs at most five bytes
+            if (this.length + 5 > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2);
+            }
+            while ((value & ~0x7f) != 0) {
+                this.bytes[this.length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            this.bytes[this.length++] = (byte) value;
+        }
+
+        /**
+         * Returns the number of bytes written, which is the offset of the next varint.
+         * @return the length
+         */
+        int length() {
+            return this.length;
+        }
+
+        /**
+         * Copies the written bytes.
+         * @return exactly the bytes written
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(this.bytes, this.length);
+        }
+    }
+
+    /**
+     * Reads varints one after another from a byte array.
+     */
+    static final class Reader {
+        private final byte[] bytes;
+        private int offset;
+
+        /**
+         * Constructs a reader positioned at a list.
+         * @param bytes the encoded lists
+         * @param offset where the list starts
+         */
+        Reader(byte[] bytes, int offset) {
+            this.bytes = bytes;
+            this.offset = offset;
+        }
+
+        /**
+         * Reads the next varint.
+         * @return the value
+         */
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = this.bytes[this.offset++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
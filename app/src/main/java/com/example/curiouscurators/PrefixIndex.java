@@ -0,0 +1,197 @@
+package com.example.curiouscurators;
+
+import java.util.Arrays;
+
+/**
+ * Packed radix trie over one sort index of the {@link CardStore}.
+ * Every node stands for the keys that share its path, and because the keys are sorted those keys
+ * sit in one contiguous run of the sort index. A prefix lookup walks at most one node per character
+ * and returns that run as a {@code [start, end)} range packed into a long, without allocating.
+ *
+ * Nodes are stored breadth-first in parallel int arrays, so the children of a node are contiguous
+ * and end where the children of the next node begin. Edge labels are not stored at all: the label
+ * into a node is read from the first key of its range, between the parent's depth and its own.
+ */
+final class PrefixIndex extends KeyIndex {
+    // Length of the path to each node
+    private final int[] depth;
+    // Range of sort positions under each node
+    private final int[] start, end;
+    // Index of the first child of each node; the children of node i end at firstChild[i + 1]
+    private final int[] firstChild;
+
+    /**
+     * Builds the trie for a sort index.
+     * @param keys keys indexed by card id
+     * @param sorted card ids in key order
+     */
+    PrefixIndex(String[] keys, int[] sorted) {
+        super(keys, sorted);
+        int capacity = Math.max(16, sorted.length * 2);
+        int[] depth = new int[capacity], start = new int[capacity], end = new int[capacity];
+        int[] firstChild = new int[capacity + 1];
+        // The root covers everything at depth 0; nodes are appended in breadth-first order
+        depth[0] = 0;
+        start[0] = 0;
+        end[0] = sorted.length;
+        int nodes = 1;
+        for (int node = 0; node < nodes; node++) {
+            firstChild[node] = nodes;
+            int d = depth[node], position = start[node], stop = end[node];
+            // Keys that end at this node sort first and belong to no child
+            while (position < stop && this.key(position).length() == d) {
+                position++;
+            }
+            while (position < stop) {
+                char c = this.key(position).charAt(d);
+                int groupEnd = this.groupEnd(position, stop, d, c);
+                if (nodes == depth.length) {
+                    depth = Arrays.copyOf(depth, nodes * 2);
+                    start = Arrays.copyOf(start, nodes * 2);
+                    end = Arrays.copyOf(end, nodes * 2);
+                    firstChild = Arrays.copyOf(firstChild, nodes * 2 + 1);
+                }
+                // Collapse single-child chains: the child's depth is the common prefix of its range
+                depth[nodes] = commonPrefix(this.key(position), this.key(groupEnd - 1), d + 1);
+                start[nodes] = position;
+                end[nodes] = groupEnd;
+                nodes++;
+                position = groupEnd;
+            }
+        }
+        firstChild[nodes] = nodes;
+        this.depth = Arrays.copyOf(depth, nodes);
+        this.start = Arrays.copyOf(start, nodes);
+        this.end = Arrays.copyOf(end, nodes);
+        this.firstChild = Arrays.copyOf(firstChild, nodes + 1);
+    }
+
+    /**
+     * Finds the cards whose key starts with a prefix.
+     * @param prefix the cleaned prefix
+     * @return the matching range of sort positions, packed by {@link #range(int, int)}
+     */
+    long find(CharSequence prefix) {
+        int length = prefix.length();
+        int node = 0;
+        int matched = 0;
+        while (matched < length) {
+            int child = this.child(node, prefix.charAt(matched));
+            if (child < 0) {
+                return range(0, 0);
+            }
+            String label = this.key(this.start[child]);
+            int stop = Math.min(this.depth[child], length);
+            for (int i = matched + 1; i < stop; i++) {
+                if (label.charAt(i) != prefix.charAt(i)) {
+                    return range(0, 0);
+                }
+            }
+            node = child;
+            matched = stop;
+        }
+        return range(this.start[node], this.end[node]);
+    }
+
+    /**
+     * Returns the number of trie nodes, for sizing.
+     * @return the node count
+     */
+    int nodeCount() {
+        return this.depth.length;
+    }
+
+    /**
+     * Packs a range of sort positions into a long.
+     * @param start first position in the range
+     * @param end position after the last one
+     * @return the packed range
+     */
+    static long range(int start, int end) {
+        return ((long) start << 32) | (end & 0xffffffffL);
+    }
+
+    /**
+     * Unpacks the start of a range.
+     * @param range a range packed by {@link #range(int, int)}
+     * @return the first position in the range
+     */
+    static int start(long range) {
+        return (int) (range >>> 32);
+    }
+
+    /**
+     * Unpacks the end of a range.
+     * @param range a range packed by {@link #range(int, int)}
+     * @return the position after the last one
+     */
+    static int end(long range) {
+        return (int) range;
+    }
+
+    /**
+     * Finds the child of a node whose edge starts with a character.
+     * @param node the parent node
+     * @param c the first character of the edge
+     * @return the child, or -1 if there is none
+     */
+    private int child(int node, char c) {
+        int low = this.firstChild[node], high = this.firstChild[node + 1] - 1;
+        int d = this.depth[node];
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char atMiddle = this.key(this.start[middle]).charAt(d);
+            if (atMiddle < c) {
+                low = middle + 1;
+            } else if (atMiddle > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of the run of keys with a given character at a given depth.
+     * @param from first position of the run
+     * @param stop end of the enclosing range
+     * @param d the depth of the character
+     * @param c the character
+     * @return the position after the run
+     */
+    private int groupEnd(int from, int stop, int d, char c) {
+        // Gallop, then binary search, so long runs cost O(log n) key reads
+        int step = 1, low = from, high = from + 1;
+        while (high < stop && this.key(high).charAt(d) == c) {
+            low = high;
+            step *= 2;
+            high = Math.min(stop, from + step);
+        }
+        while (low + 1 < high) {
+            int middle = (low + high) >>> 1;
+            if (this.key(middle).charAt(d) == c) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low + 1;
+    }
+
+    /**
+     * Measures the common prefix of two keys, knowing they agree on the first few characters.
+     * @param a one key
+     * @param b another key
+     * @param from number of leading characters already known to match
+     * @return the common prefix length
+     */
+    private static int commonPrefix(String a, String b, int from) {
+        int limit = Math.min(a.length(), b.length());
+        int i = from;
+        while (i < limit && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
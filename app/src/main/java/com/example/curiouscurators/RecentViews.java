@@ -0,0 +1,38 @@
+package com.example.curiouscurators;
+
+/**
+ * The most recently opened cards, newest first, used to rank popular cards higher in search results.
+ * Only the last {@link #CAPACITY} views are kept, in a ring, so the history costs the same however
+ * long the app runs. Views are recorded on the main thread and read by the search worker.
+ */
+final class RecentViews {
+    // Number of views remembered
+    static final int CAPACITY = 128;
+
+    // Card ids of the last views, as a ring; the newest is just before next
+    private final int[] ring = new int[CAPACITY];
+    // Slot the next view is written to, and the number of views recorded so far, up to the capacity
+    private int next = 0, count = 0;
+
+    /**
+     * Records that a card was opened.
+     * @param id the card id
+     */
+    synchronized void record(int id) {
+        this.ring[this.next] = id;
+        this.next = (this.next + 1) % CAPACITY;
+        this.count = Math.min(this.count + 1, CAPACITY);
+    }
+
+    /**
+     * Copies the remembered views.
+     * @return card ids, newest first; a card opened several times appears several times
+     */
+    synchronized int[] newestFirst() {
+        int[] ids = new int[this.count];
+        for (int i = 0; i < this.count; i++) {
+            ids[i] = this.ring[(this.next - 1 - i + CAPACITY) % CAPACITY];
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.curiouscurators;
+
+import java.util.HashMap;
+
+/**
+ * Orders search results by how well each card matches, best first, listing only the best at first.
+ * Every candidate gets a score from a few cheap signals: an exact key match, how early in the key
+ * the filter's first word starts a word, which fields (name, set, illustrator) contain every word
+ * of the filter at a word start, whether the card is owned, and how often it was opened recently.
+ *
+ * Scores are computed once, in one pass, and packed with the candidate position into one long per
+ * candidate. The best ones are then picked with a bounded min-heap, so the first screen costs one
+ * pass over the scores and no sort of the whole candidate set. A ranking is never modified after it
+ * is built: each call to {@link #best} returns a new list, so a longer list can be picked on the
+ * search worker while a shorter one is shown. Ties keep the order the candidates came in.
+ */
+final class RelevanceRanking {
+    // Number of results listed at first, about a screenful
+    static final int FIRST_SCREEN = 48;
+
+    // Score of a filtered key equal to the whole filter
+    private static final int EXACT_WEIGHT = 1000;
+    // Score of each field whose words start with every word of the filter
+    private static final int NAME_WEIGHT = 60, SET_WEIGHT = 30, ARTIST_WEIGHT = 20;
+    // Score of the filter's first word starting the first word of the filtered key, less a step per later word
+    private static final int POSITION_WEIGHT = 40, POSITION_STEP = 10;
+    // Score of an owned card
+    private static final int OWNED_WEIGHT = 25;
+    // Largest score of a recently opened card, reached by two views just now
+    private static final int POPULARITY_WEIGHT = 40;
+
+    // Candidates in their incoming order
+    private final CardRange candidates;
+    // Score in the high half and the inverted candidate position in the low half, by candidate position;
+    // larger is better and no two are equal; never modified after the constructor
+    private final long[] keys;
+
+    /**
+     * Scores the candidates of a search.
+     * @param store the store the ids are read from
+     * @param candidates matching card ids, in filter key or sort order
+     * @param filter the cleaned filter
+     * @param filterType the key the filter was matched against
+     * @param recentViews ids of recently opened cards, newest first
+     */
+    RelevanceRanking(CardStore store, CardRange candidates, String filter, CardSubset.FilterType filterType,
+                     int[] recentViews) {
+        this.candidates = candidates;
+        this.keys = new long[candidates.size()];
+        String[] filterKeys = filterType == CardSubset.FilterType.Artist ? store.artistKeys
+                : filterType == CardSubset.FilterType.Set ? store.setKeys
+                : store.nameKeys;
+        String[] words = TokenIndex.split(filter);
+        // Newer views count more; a card viewed several times adds up
+        HashMap<Integer, Integer> viewWeights = new HashMap<>();
+        for (int i = 0; i < recentViews.length; i++) {
+            Integer weight = viewWeights.get(recentViews[i]);
+            viewWeights.put(recentViews[i], (weight == null ? 0 : weight) + RecentViews.CAPACITY - i);
+        }
+
+        for (int position = 0; position < this.keys.length; position++) {
+            int id = candidates.get(position);
+            int score = 0;
+            if (words.length > 0) {
+                if (filterKeys[id].equals(filter)) {
+                    score += EXACT_WEIGHT;
+                }
+                int first = wordIndex(filterKeys[id], words[0]);
+                if (first >= 0) {
+                    score += Math.max(POSITION_WEIGHT - POSITION_STEP * first, 0);
+                }
+                if (allWordsStart(store.nameKeys[id], words)) {
+                    score += NAME_WEIGHT;
+                }
+                if (allWordsStart(store.setKeys[id], words)) {
+                    score += SET_WEIGHT;
+                }
+                if (allWordsStart(store.artistKeys[id], words)) {
+                    score += ARTIST_WEIGHT;
+                }
+            }
+            if (Card.isCardOwned(store.globalIds[id])) {
+                score += OWNED_WEIGHT;
+            }
+            Integer views = viewWeights.get(id);
+            if (views != null) {
+                score += Math.min(POPULARITY_WEIGHT, views * POPULARITY_WEIGHT / (2 * RecentViews.CAPACITY));
+            }
+            this.keys[position] = ((long) score << 32) | (Integer.MAX_VALUE - position);
+        }
+    }
+
+    /**
+     * Scores the results of the current search by relevance.
+     * @param candidates matching card ids
+     * @param filter the cleaned filter
+     * @param filterType the key the filter was matched against
+     * @return the ranking, from which the best results are listed with {@link #best}
+     */
+    static RelevanceRanking rank(CardRange candidates, String filter, CardSubset.FilterType filterType) {
+        return new RelevanceRanking(Card.getStore(), candidates, filter, filterType,
+                Card.getRecentViews().newestFirst());
+    }
+
+    /**
+     * Returns the number of candidates.
+     * @return the size of the full ranking
+     */
+    int size() {
+        return this.keys.length;
+    }
+
+    /**
+     * Picks the best candidates with a bounded min-heap. A longer list starts with every id of a shorter one.
+     * @param count the number of ids wanted
+     * @return up to count ids, best first
+     */
+    CardRange best(int count) {
+        int limit = Math.min(Math.max(count, 0), this.keys.length);
+        long[] heap = new long[limit];
+        int size = 0;
+        for (long key : this.keys) {
+            if (size < limit) {
+                heap[size] = key;
+                siftUp(heap, size++);
+            } else if (limit > 0 && key > heap[0]) {
+                heap[0] = key;
+                siftDown(heap, size);
+            }
+        }
+        // The heap gives up its keys smallest first, so they are written from the back
+        int[] ids = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            long key = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+            ids[i] = this.candidates.get(Integer.MAX_VALUE - (int) key);
+        }
+        return CardRange.of(ids);
+    }
+
+    /**
+     * Moves a new key up a min-heap to its place.
+     */
+    private static void siftUp(long[] heap, int index) {
+        long key = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = key;
+    }
+
+    /**
+     * Moves the root of a min-heap down to its place.
+     */
+    private static void siftDown(long[] heap, int size) {
+        if (size == 0) {
+            return;
+        }
+        long key = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= key) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = key;
+    }
+
+    /**
+     * Checks whether every word of a query starts a word of a key.
+     * @param key a cleaned key
+     * @param words the words of the query
+     * @return true if each word is found
+     */
+    private static boolean allWordsStart(String key, String[] words) {
+        for (String word : words) {
+            if (wordIndex(key, word) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first word of a key that starts with a query word, without splitting the key.
+     * @param key a cleaned key
+     * @param word a query word
+     * @return the number of words before it in the key, or -1 if no word starts with the query word
+     */
+    private static int wordIndex(String key, String word) {
+        int index = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == ' ' || c == '-') {
+                continue;
+            }
+            char before = i == 0 ? ' ' : key.charAt(i - 1);
+            if (before != ' ' && before != '-') {
+                continue;
+            }
+            if (key.startsWith(word, i)) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+}
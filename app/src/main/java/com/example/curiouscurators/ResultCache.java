@@ -0,0 +1,108 @@
+package com.example.curiouscurators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of filter results for one filter type of the {@link CardStore}.
+ * Entries are keyed by match mode and cleaned filter, so backspacing, switching filter type and
+ * back, or retyping a common prefix is answered without searching again. Prefix matches are kept
+ * as a packed {@link PrefixIndex} range of the sort index, which costs the same whatever its length;
+ * other matches keep their id list. The cache is bounded by the estimated bytes of its entries.
+ */
+final class ResultCache {
+    // Estimated bytes the entries of one cache may hold
+    private static final int MAX_BYTES = 512 * 1024;
+    // Estimated bytes of an entry besides its ids and key characters
+    private static final int ENTRY_OVERHEAD = 64;
+
+    // Entries in access order, least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Estimated bytes of all entries
+    private int bytes = 0;
+
+    /**
+     * A cached result: either a range of sort positions or a list of card ids.
+     */
+    private static final class Entry {
+        final long range;
+        final int[] ids;
+        final int bytes;
+
+        Entry(String key, long range, int[] ids) {
+            this.range = range;
+            this.ids = ids;
+            this.bytes = ENTRY_OVERHEAD + 2 * key.length() + (ids == null ? 0 : 4 * ids.length);
+        }
+    }
+
+    /**
+     * Looks up a cached prefix match.
+     * @param filter the cleaned filter
+     * @return the packed range of sort positions, or -1 if it is not cached
+     */
+    synchronized long getRange(String filter) {
+        Entry entry = this.entries.get(key(CardSubset.MatchMode.Prefix, filter));
+        return entry == null || entry.ids != null ? -1 : entry.range;
+    }
+
+    /**
+     * Caches a prefix match as a range.
+     * @param filter the cleaned filter
+     * @param range the packed range of sort positions
+     */
+    synchronized void putRange(String filter, long range) {
+        String key = key(CardSubset.MatchMode.Prefix, filter);
+        this.put(key, new Entry(key, range, null));
+    }
+
+    /**
+     * Looks up a cached match.
+     * @param matchMode how the filter was matched
+     * @param filter the cleaned filter
+     * @return the matching card ids, which must not be modified, or null if they are not cached
+     */
+    synchronized int[] getIds(CardSubset.MatchMode matchMode, String filter) {
+        Entry entry = this.entries.get(key(matchMode, filter));
+        return entry == null ? null : entry.ids;
+    }
+
+    /**
+     * Caches a match as a list of ids. Lists too large for a fair share of the cache are skipped.
+     * @param matchMode how the filter was matched
+     * @param filter the cleaned filter
+     * @param ids the matching card ids, which must not be modified afterwards
+     */
+    synchronized void putIds(CardSubset.MatchMode matchMode, String filter, int[] ids) {
+        String key = key(matchMode, filter);
+        Entry entry = new Entry(key, -1, ids);
+        if (entry.bytes > MAX_BYTES / 4) {
+            return;
+        }
+        this.put(key, entry);
+    }
+
+    /**
+     * Adds an entry and evicts the least recently used ones until the cache is within budget.
+     */
+    private void put(String key, Entry entry) {
+        Entry replaced = this.entries.put(key, entry);
+        if (replaced != null) {
+            this.bytes -= replaced.bytes;
+        }
+        this.bytes += entry.bytes;
+        Iterator<Map.Entry<String, Entry>> eldest = this.entries.entrySet().iterator();
+        while (this.bytes > MAX_BYTES && eldest.hasNext()) {
+            this.bytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Combines a match mode and a filter into one key.
+     */
+    private static String key(CardSubset.MatchMode matchMode, String filter) {
+        return (char) ('0' + matchMode.ordinal()) + filter;
+    }
+}
@@ -1,6 +1,5 @@
 package com.example.curiouscurators;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
@@ -38,6 +37,7 @@ public class SearchActivity extends AppCompatActivity {
     private RecyclerView cardRecycler;
     private SearchRecyclerViewAdapter cardAdapter;
     private CardSubset searchSubset;
+    private SearchExecutor searchExecutor;
     private Spinner searchType, sortType;
     private ArrayAdapter<CharSequence> searchAdapter, sortAdapter;
 
@@ -86,8 +86,8 @@ public class SearchActivity extends AppCompatActivity {
             return insets;
         });
 
-        // Initialize card data
-        Card.initialize(this);
+        // Start loading card data if it is not loaded yet
+        Card.initializeAsync(this);
         // Set up the RecyclerView for displaying cards
         this.cardRecycler = findViewById(R.id.searchRecyclerView);
         this.searchType = findViewById(R.id.searchType);
@@ -97,26 +97,27 @@ public class SearchActivity extends AppCompatActivity {
         // Set up the search type dropdown
         this.searchAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         this.searchType.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            @SuppressLint("NotifyDataSetChanged")
             @Override
             public void onItemSelected(AdapterView<?> adapterView, View view, int pos, long id) {
                 switch(pos) {
                     case 0:
-                        SearchActivity.this.searchSubset.setFilterType(CardSubset.FilterType.Name);
+                        SearchActivity.this.searchExecutor.setFilterType(CardSubset.FilterType.Name);
                         break;
                     case 1:
-                        SearchActivity.this.searchSubset.setFilterType(CardSubset.FilterType.Artist);
+                        SearchActivity.this.searchExecutor.setFilterType(CardSubset.FilterType.Artist);
                         break;
                     case 2:
-                        SearchActivity.this.searchSubset.setFilterType(CardSubset.FilterType.Set);
+                        SearchActivity.this.searchExecutor.setFilterType(CardSubset.FilterType.Set);
+                        break;
+                    case 3:
+                        SearchActivity.this.searchExecutor.setFilterType(CardSubset.FilterType.Text);
                         break;
                 }
-                SearchActivity.this.cardAdapter.notifyDataSetChanged();
             }
 
             @Override
             public void onNothingSelected(AdapterView<?> adapterView) { // Default to filtering by name if no selection
-                SearchActivity.this.searchSubset.setFilterType(CardSubset.FilterType.Name);
+                SearchActivity.this.searchExecutor.setFilterType(CardSubset.FilterType.Name);
             }
         });
         this.searchType.setAdapter(this.searchAdapter);
@@ -127,34 +128,95 @@ public class SearchActivity extends AppCompatActivity {
                 this, R.array.sortDropdown,
                 R.layout.spinner_item);
         this.sortAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        this.sortType.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> adapterView, View view, int pos, long id) {
+                switch(pos) {
+                    case 0:
+                        SearchActivity.this.searchExecutor.setSortType(CardSubset.SortType.Relevance);
+                        break;
+                    case 1:
+                        SearchActivity.this.searchExecutor.setSortType(CardSubset.SortType.Name);
+                        break;
+                    case 2:
+                        SearchActivity.this.searchExecutor.setSortType(CardSubset.SortType.Artist);
+                        break;
+                    case 3:
+                        SearchActivity.this.searchExecutor.setSortType(CardSubset.SortType.Set);
+                        break;
+                    case 4:
+                        SearchActivity.this.searchExecutor.setSortType(CardSubset.SortType.Hp);
+                        break;
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> adapterView) { // Default to the best matches first if no selection
+                SearchActivity.this.searchExecutor.setSortType(CardSubset.SortType.Relevance);
+            }
+        });
         this.sortType.setAdapter(this.sortAdapter);
 
-        // Initialize the card subset for filtering and sorting
-        this.searchSubset = new CardSubset();
+        // Initialize the card subset for filtering and sorting; it stays empty until the first search
+        // runs on the search worker.
+        // Match the start of any word, so "lugia" finds "shining lugia" and "sugimori" finds "ken sugimori".
+        // Put exact and popular matches first, as the sort dropdown starts on relevance.
+        // Fall back to near misses, so "charzard" still finds "charizard".
+        this.searchSubset = new CardSubset(CardSubset.MatchMode.Words, CardSubset.SortType.Relevance, true);
         this.cardAdapter = new SearchRecyclerViewAdapter(this, this.searchSubset);
         this.cardRecycler.setAdapter(this.cardAdapter);
-        this.cardRecycler.setLayoutManager(new LinearLayoutManager(this));
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        this.cardRecycler.setLayoutManager(layoutManager);
+        // Relevance results are listed a screenful at a time; ask for more before the end comes into view
+        this.cardRecycler.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                SearchActivity.this.searchExecutor.listAtLeast(lastVisible + 1 + RelevanceRanking.FIRST_SCREEN);
+            }
+        });
+        // Run searches in the background and show their results as they arrive
+        this.searchExecutor = new SearchExecutor(this.searchSubset, new SearchExecutor.Listener() {
+            @Override
+            public void onPublished(SubsetChange change) {
+                // Only the rows that came or went are rebound
+                change.dispatchTo(SearchActivity.this.cardAdapter);
+            }
+        });
+
+        // Populate the results once the catalog has loaded
+        Card.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                SearchActivity.this.searchExecutor.refresh();
+            }
+        });
 
         // Set up the search bar
         SearchView search = findViewById(R.id.searchBar);
         search.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
-            @SuppressLint("NotifyDataSetChanged")
             @Override
             public boolean onQueryTextSubmit(String s) {
-                SearchActivity.this.searchSubset.setFilter(s); // Apply filter based on search query
-                SearchActivity.this.cardAdapter.notifyDataSetChanged(); // Notify adapter of changes
+                SearchActivity.this.searchExecutor.setFilter(s); // Apply filter based on search query
                 return true;
             }
 
-            @SuppressLint("NotifyDataSetChanged")
             @Override
             public boolean onQueryTextChange(String s) {
-                SearchActivity.this.searchSubset.setFilter(s); // Apply filter based on search query
-                SearchActivity.this.cardAdapter.notifyDataSetChanged(); // Notify adapter of changes
+                SearchActivity.this.searchExecutor.setFilter(s); // Apply filter once typing pauses
                 return true;
             }
         });
     }
+
+    /**
+     * Stops the search worker when the activity goes away.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        this.searchExecutor.shutdown();
+    }
 }
 
 /**
@@ -206,16 +268,16 @@ class SearchRecyclerViewAdapter
      */
     @Override
     public void onBindViewHolder(@NonNull MyViewHolder holder, int position) {
-        // Get the card ID from the dataset
-        String id = this.cards.getContained().get(position)[1];
-        // Fetch the card details using the ID
-        Card current = Card.getCardById(id);
+        // Read the row straight from the store columns, without building a Card
+        CardStore store = Card.getStore();
+        int id = this.cards.getContained().get(position);
+        String globalId = store.globalIds[id];
 
         // Set the UI elements with the card data
-        holder.name.setText(current.name);
-        holder.setLogo.setImageDrawable(Card.getLogoById(current.setId));
-        holder.artist.setText(current.illustrator);
-        holder.set.setText(current.setName);
+        holder.name.setText(store.names[id]);
+        Card.loadLogoInto(holder.setLogo, store.setIds[id]);
+        holder.artist.setText(store.illustrators[id]);
+        holder.set.setText(store.setNames[id]);
 
         // Set an OnClickListener to handle item clicks
         holder.itemView.setOnClickListener(new View.OnClickListener() {
@@ -223,7 +285,7 @@ class SearchRecyclerViewAdapter
             public void onClick(View view) {
                 // Start SingleCardActivity with the card ID as an extra
                 Intent i = new Intent(context, SingleCardActivity.class);
-                i.putExtra("id", current.globalId);
+                i.putExtra("id", globalId);
                 context.startActivity(i);
             }
         });
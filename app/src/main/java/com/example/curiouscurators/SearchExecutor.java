@@ -0,0 +1,201 @@
+package com.example.curiouscurators;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the searches of a {@link CardSubset} on a background thread, latest request wins.
+ * Typing is debounced, so a burst of keystrokes becomes one search. Each request works on its own
+ * copy of the subset; when it finishes, the copy is adopted by the shown subset on the main thread
+ * in one step, together with a {@link SubsetChange} against the results it replaces, so the adapter
+ * never sees half-updated results and only rebinds the rows that changed. A request that has been
+ * overtaken is cancelled if it has not started, and its results are dropped if it has.
+ * Results ranked by relevance are listed a screenful at a time; longer lists are picked on the
+ * worker as the user scrolls, and published the same way as new rows at the end.
+ *
+ * All methods must be called on the main thread.
+ */
+final class SearchExecutor {
+    // How long typing must pause before the filter is searched
+    private static final long DEBOUNCE_MILLIS = 150;
+
+    // Subset shown by the adapter; only touched on the main thread
+    private final CardSubset shown;
+    // Settings of the latest request; only touched on the main thread
+    private final CardSubset requested;
+    // Told on the main thread about each publish
+    private final Listener listener;
+    // Number of the latest request; results of any other request are stale
+    private final AtomicLong generation = new AtomicLong();
+    // The latest request, while it is waiting or running
+    private ScheduledFuture<?> pending = null;
+    // Results a longer list is being picked from, so scrolling does not ask for it twice
+    private CardRange listing = null;
+    // Set once the worker is stopped; later requests are ignored
+    private boolean shutDown = false;
+    private final Handler mainThread = new Handler(Looper.getMainLooper());
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "search-worker");
+        }
+    });
+
+    /**
+     * Receives published results on the main thread.
+     */
+    interface Listener {
+        /**
+         * Called right after the shown subset has adopted new results.
+         * @param change how the results differ from the ones shown before
+         */
+        void onPublished(SubsetChange change);
+    }
+
+    /**
+     * Constructs an executor for a subset.
+     * @param shown the subset the results are published to
+     * @param listener told about each publish, for example to notify the adapter
+     */
+    SearchExecutor(CardSubset shown, Listener listener) {
+        this.shown = shown;
+        this.requested = new CardSubset(shown);
+        this.listener = listener;
+    }
+
+    /**
+     * Searches for a new filter once typing pauses.
+     * @param filter the raw filter string
+     */
+    void setFilter(String filter) {
+        this.requested.filter = Card.cleanName(filter);
+        this.submit(DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Searches the current filter against another key right away.
+     * @param filterType the key to match
+     */
+    void setFilterType(CardSubset.FilterType filterType) {
+        this.requested.filterType = filterType;
+        this.submit(0);
+    }
+
+    /**
+     * Reorders the results right away.
+     * @param sortType the order to show the cards in
+     */
+    void setSortType(CardSubset.SortType sortType) {
+        this.requested.sortType = sortType;
+        this.submit(0);
+    }
+
+    /**
+     * Searches the current settings again right away, for example once the catalog has loaded.
+     */
+    void refresh() {
+        this.submit(0);
+    }
+
+    /**
+     * Lists more of the shown results on the worker, when they are ranked by relevance and only the
+     * best are listed so far. Called as the user scrolls; does nothing once every match is listed.
+     * @param count the number of results that should be listed, such as the last visible position plus a screenful
+     */
+    void listAtLeast(final int count) {
+        final CardRange before = this.shown.getContained();
+        if (this.shutDown || !this.shown.hasMore() || count <= before.size() || this.listing == before) {
+            return;
+        }
+        this.listing = before;
+        // Not a new request: a search made after this one still supersedes it
+        final long ticket = this.generation.get();
+        final CardSubset request = new CardSubset(this.shown);
+        this.worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (SearchExecutor.this.generation.get() != ticket) {
+                    return;
+                }
+                request.listAtLeast(count);
+                // The shown ids are the start of the longer list, so this is one insertion at the end
+                final SubsetChange change = SubsetChange.between(before, request.getContained());
+                SearchExecutor.this.mainThread.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // A search may have published other results in the meantime
+                        if (SearchExecutor.this.generation.get() != ticket
+                                || SearchExecutor.this.shown.getContained() != before) {
+                            return;
+                        }
+                        SearchExecutor.this.shown.adopt(request);
+                        SearchExecutor.this.listener.onPublished(change);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops any pending request and stops the worker thread. Requests made afterwards, for example by
+     * a catalog load that finishes later, are ignored.
+     */
+    void shutdown() {
+        this.shutDown = true;
+        this.generation.incrementAndGet();
+        this.worker.shutdownNow();
+    }
+
+    /**
+     * Schedules a search of the current settings, superseding any earlier request.
+     * @param delayMillis how long to wait before starting
+     */
+    private void submit(long delayMillis) {
+        if (this.shutDown) {
+            return;
+        }
+        final long ticket = this.generation.incrementAndGet();
+        final CardSubset request = new CardSubset(this.requested);
+        // Results are never modified once published, so the worker can diff against them
+        final CardRange before = this.shown.getContained();
+        if (this.pending != null) {
+            // Only stops a request that has not started; a running one notices the new generation
+            this.pending.cancel(false);
+        }
+        this.pending = this.worker.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (SearchExecutor.this.generation.get() != ticket) {
+                    return;
+                }
+                request.refresh();
+                if (SearchExecutor.this.generation.get() != ticket) {
+                    return;
+                }
+                final SubsetChange change = SubsetChange.between(before, request.getContained());
+                SearchExecutor.this.mainThread.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // A newer request may have been made while this one was queued for the main thread
+                        if (SearchExecutor.this.generation.get() != ticket) {
+                            return;
+                        }
+                        // The diff is only valid against the results it was computed from
+                        SubsetChange published = SearchExecutor.this.shown.getContained() == before
+                                ? change
+                                : SubsetChange.between(SearchExecutor.this.shown.getContained(), request.getContained());
+                        SearchExecutor.this.shown.adopt(request);
+                        SearchExecutor.this.listener.onPublished(published);
+                    }
+                });
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+}
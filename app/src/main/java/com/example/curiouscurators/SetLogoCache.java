@@ -0,0 +1,169 @@
+package com.example.curiouscurators;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes set logos on first use and keeps the most recently used ones within a memory budget.
+ * Only the mapping from set ID to drawable resource is built up front; each logo is
+ * downsampled to the size it is displayed at and can be decoded off the main thread.
+ */
+final class SetLogoCache {
+    // Set shown for cards whose set has no logo
+    private static final String FALLBACK_SET = "base1";
+    // Upper bound on the memory held by decoded logos
+    private static final int MAX_BUDGET_BYTES = 4 * 1024 * 1024;
+
+    private final Resources resources;
+    // Drawable resource of each set logo, by set ID
+    private final HashMap<String, Integer> logoResources = new HashMap<>();
+    // Decoded logos, by set ID
+    private final LruCache<String, Bitmap> decoded;
+    private final int targetWidth, targetHeight;
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor();
+    private final Handler mainThread = new Handler(Looper.getMainLooper());
+
+    /**
+     * Reads the set logo resource table without decoding any logo.
+     * @param context the application context
+     */
+    SetLogoCache(Context context) {
+        this.resources = context.getResources();
+        TypedArray setNames = this.resources.obtainTypedArray(R.array.setNames);
+        TypedArray setLogos = this.resources.obtainTypedArray(R.array.setLogos);
+        for (int i = 0; i < setNames.length(); i++) {
+            this.logoResources.put(setNames.getString(i), setLogos.getResourceId(i, -1));
+        }
+        setNames.recycle();
+        setLogos.recycle();
+        this.targetWidth = this.resources.getDimensionPixelSize(R.dimen.set_logo_width);
+        this.targetHeight = this.resources.getDimensionPixelSize(R.dimen.set_logo_height);
+        int budget = (int) Math.min(MAX_BUDGET_BYTES, Runtime.getRuntime().maxMemory() / 32);
+        this.decoded = new LruCache<String, Bitmap>(budget) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Retrieves the logo of a set, decoding it on the calling thread if it is not cached.
+     * @param setId the set ID
+     * @return the logo, or the fallback set's logo if the set has none
+     */
+    Drawable get(String setId) {
+        Bitmap bitmap = this.bitmap(this.resolve(setId));
+        if (bitmap == null) {
+            return null;
+        }
+        return new BitmapDrawable(this.resources, bitmap);
+    }
+
+    /**
+     * Shows the logo of a set in an image view, decoding it in the background if it is not cached.
+     * If the view is rebound to another set before decoding finishes, the stale logo is dropped.
+     * @param view the view to show the logo in
+     * @param setId the set ID
+     */
+    void loadInto(final ImageView view, String setId) {
+        final String key = this.resolve(setId);
+        Bitmap cached = this.decoded.get(key);
+        view.setTag(R.id.logo_request, key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageDrawable(null);
+        this.decoder.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = SetLogoCache.this.bitmap(key);
+                SetLogoCache.this.mainThread.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (key.equals(view.getTag(R.id.logo_request))) {
+                            view.setImageBitmap(bitmap);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops every decoded logo, for example when the system is low on memory.
+     */
+    void clear() {
+        this.decoded.evictAll();
+    }
+
+    /**
+     * Maps a set ID to one that has a logo.
+     * @param setId the set ID
+     * @return the set ID itself, or the fallback set if it has no logo
+     */
+    private String resolve(String setId) {
+        return this.logoResources.containsKey(setId) ? setId : FALLBACK_SET;
+    }
+
+    /**
+     * Returns the decoded logo of a set that has one, decoding and caching it if needed.
+     * @param setId a set ID with a logo resource
+     * @return the logo bitmap
+     */
+    private Bitmap bitmap(String setId) {
+        Bitmap bitmap = this.decoded.get(setId);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        Integer resource = this.logoResources.get(setId);
+        if (resource == null) {
+            return null;
+        }
+        // Read the bounds first so the logo can be decoded at the smallest sufficient size
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(this.resources, resource, options);
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight,
+                this.targetWidth, this.targetHeight);
+        options.inJustDecodeBounds = false;
+        bitmap = BitmapFactory.decodeResource(this.resources, resource, options);
+        if (bitmap != null) {
+            this.decoded.put(setId, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Finds the largest power-of-two downsampling that keeps an image at least as big as the target.
+     * @param width the image width
+     * @param height the image height
+     * @param targetWidth the width it is displayed at
+     * @param targetHeight the height it is displayed at
+     * @return the sample size to decode with
+     */
+    static int sampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sample = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return sample;
+        }
+        while (width / (sample * 2) >= targetWidth && height / (sample * 2) >= targetHeight) {
+            sample *= 2;
+        }
+        return sample;
+    }
+}
@@ -82,15 +82,12 @@ public class SingleCardActivity extends AppCompatActivity {
             v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
             return insets;
         });
-        Card.initialize(this); // Initialize card data
+        Card.initializeAsync(this); // Start loading card data if it is not loaded yet
         String id = getIntent().getStringExtra("id"); // Get the card ID from the intent extras
         if (id == null) {
             id = "xy8-79"; // Default ID if none is provided
         }
 
-        // Retrieve the card data based on the ID
-        this.card = Card.getCardById(id);
-
         // Initialize UI elements
         this.cardImage = findViewById(R.id.cardImage);
         this.typeImage = findViewById(R.id.type);
@@ -104,6 +101,45 @@ public class SingleCardActivity extends AppCompatActivity {
         this.returnButton = findViewById(R.id.returnButton);
         this.addButton = findViewById(R.id.addButton);
 
+        // Set up the click listener for the return button
+        this.returnButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+               SingleCardActivity.this.finish();
+            }
+        });
+
+        // Fill in the card details once the catalog has loaded
+        final String cardId = id;
+        Card.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                if (!SingleCardActivity.this.isDestroyed()) {
+                    showCard(cardId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes any pending collection changes as soon as the activity leaves the foreground.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        Card.flushOwnedCards();
+    }
+
+    /**
+     * Displays the details of a card and starts downloading its image.
+     * Must be called once the card catalog is loaded.
+     * @param id the global ID of the card to show
+     */
+    private void showCard(String id) {
+        // Retrieve the card data based on the ID
+        this.card = Card.getCardById(id);
+        Card.recordView(id);
+
         // Set the images and text views with card details
         this.setImage.setImageDrawable(Card.getLogoById(card.setId));
         this.cardName.setText(card.name);
@@ -135,14 +171,6 @@ public class SingleCardActivity extends AppCompatActivity {
             }
         });
 
-        // Set up the click listener for the return button
-        this.returnButton.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View view) {
-               SingleCardActivity.this.finish();
-            }
-        });
-
         // Set up an executor for downloading the card image in a background thread
         this.downloadThread = Executors.newSingleThreadExecutor();
         this.downloadThread.execute(new Runnable() {
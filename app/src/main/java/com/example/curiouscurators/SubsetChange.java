@@ -0,0 +1,167 @@
+package com.example.curiouscurators;
+
+import android.annotation.SuppressLint;
+
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * The difference between two result lists of a {@link CardSubset}, as list update notifications.
+ * Narrowing a filter keeps the surviving cards in the same order, so the new list is a subsequence
+ * of the old one and the change is a few removed ranges; widening it is the reverse. Both are found
+ * in one linear pass. Anything else is handed to {@link DiffUtil} while the lists are small enough.
+ * Lists too different for either, or changes scattered over too many ranges, are reported as a full reload.
+ *
+ * Changes are meant to be computed on a background thread and dispatched on the main thread.
+ */
+final class SubsetChange {
+    // Largest combined list length worth diffing with DiffUtil; beyond it a full reload is cheaper
+    private static final int DIFF_LIMIT = 4000;
+    // Largest number of ranges worth notifying one by one; beyond it a full reload is cheaper
+    private static final int RANGE_LIMIT = 256;
+
+    // Whether the lists are unrelated and the adapter should reload everything
+    private final boolean reload;
+    // Ranges to remove, in old positions, and to insert, in new positions; (position, count) pairs, ascending
+    private final int[] removed, inserted;
+    // General diff, when neither list is a subsequence of the other
+    private final DiffUtil.DiffResult diff;
+
+    private SubsetChange(boolean reload, int[] removed, int[] inserted, DiffUtil.DiffResult diff) {
+        this.reload = reload;
+        this.removed = removed;
+        this.inserted = inserted;
+        this.diff = diff;
+    }
+
+    /**
+     * Computes the change from one result list to another.
+     * @param before card ids currently shown
+     * @param after card ids to show instead
+     * @return the change
+     */
+    static SubsetChange between(final CardRange before, final CardRange after) {
+        if (before.sameAs(after)) {
+            return new SubsetChange(false, new int[0], new int[0], null);
+        }
+        int[] ranges = subsequenceRanges(after, before);
+        if (ranges != null) {
+            return ranges.length / 2 > RANGE_LIMIT
+                    ? new SubsetChange(true, null, null, null)
+                    : new SubsetChange(false, ranges, new int[0], null);
+        }
+        ranges = subsequenceRanges(before, after);
+        if (ranges != null) {
+            return ranges.length / 2 > RANGE_LIMIT
+                    ? new SubsetChange(true, null, null, null)
+                    : new SubsetChange(false, new int[0], ranges, null);
+        }
+        if (before.size() + after.size() > DIFF_LIMIT) {
+            return new SubsetChange(true, null, null, null);
+        }
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return before.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return after.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return before.get(oldPosition) == after.get(newPosition);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                // A card's row only depends on its id
+                return true;
+            }
+        }, false);
+        return new SubsetChange(false, null, null, diff);
+    }
+
+    /**
+     * Checks whether the change is a full reload rather than precise updates.
+     * @return true if the lists were too different to report range by range
+     */
+    boolean isReload() {
+        return this.reload;
+    }
+
+    /**
+     * Notifies an adapter of the change. Must run on the main thread, right after the new list is in place.
+     * @param adapter the adapter showing the list
+     */
+    @SuppressLint("NotifyDataSetChanged")
+    void dispatchTo(RecyclerView.Adapter<?> adapter) {
+        if (this.reload) {
+            adapter.notifyDataSetChanged();
+        } else {
+            this.dispatchTo(new AdapterListUpdateCallback(adapter));
+        }
+    }
+
+    /**
+     * Reports the change as range updates.
+     * @param callback receives the inserted and removed ranges
+     */
+    void dispatchTo(ListUpdateCallback callback) {
+        if (this.diff != null) {
+            this.diff.dispatchUpdatesTo(callback);
+            return;
+        }
+        // Removing from the back keeps the earlier old positions valid
+        for (int i = this.removed.length - 2; i >= 0; i -= 2) {
+            callback.onRemoved(this.removed[i], this.removed[i + 1]);
+        }
+        // Inserting from the front places every run after rows that are already final
+        for (int i = 0; i < this.inserted.length; i += 2) {
+            callback.onInserted(this.inserted[i], this.inserted[i + 1]);
+        }
+    }
+
+    /**
+     * Finds the runs of a list that are missing from a subsequence of it.
+     * @param shorter the candidate subsequence
+     * @param longer the full list
+     * @return (position, count) pairs of the runs of longer that shorter skips, or null if shorter
+     *         is not a subsequence of longer
+     */
+    private static int[] subsequenceRanges(CardRange shorter, CardRange longer) {
+        if (shorter.size() > longer.size()) {
+            return null;
+        }
+        int[] runs = new int[16];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < longer.size(); ) {
+            if (j < shorter.size() && longer.get(i) == shorter.get(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            // Ids in a result list are unique, so a mismatch is the start of a skipped run
+            int start = i;
+            while (i < longer.size() && (j == shorter.size() || longer.get(i) != shorter.get(j))) {
+                i++;
+            }
+            if (size + 2 > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            runs[size++] = start;
+            runs[size++] = i - start;
+        }
+        if (j < shorter.size()) {
+            return null;
+        }
+        return Arrays.copyOf(runs, size);
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.curiouscurators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Inverted index over the free text of every card (effects, attacks, descriptions), ranked by BM25.
+ * Text is split into lower-case words of letters and digits, and common English words are left out
+ * of the index and of the completed words of queries. Every word of a query must occur in a card;
+ * the last word also matches the words it starts, so results follow the user while the last word is
+ * still being typed. It is kept even if it is a common word, as "a" may be the start of "attach".
+ *
+ * Each term's posting list holds the ascending card ids that use it with the number of uses, as
+ * varint-encoded (gap, count) pairs in one shared byte array. Cards are scored with BM25, which
+ * favours rare terms, repeated terms and short texts.
+ */
+final class TextIndex {
+    // BM25 term frequency saturation and length normalization
+    private static final float K1 = 1.2f, B = 0.75f;
+    // Words too common in card text to tell cards apart
+    private static final HashSet<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "if", "in",
+            "into", "is", "it", "its", "of", "on", "or", "that", "the", "then", "this", "to", "was",
+            "with", "you", "your"));
+
+    // Number of words of each card's text, by card id, and their mean
+    private final int[] lengths;
+    private final float meanLength;
+    // Distinct terms in ascending order
+    private final String[] terms;
+    // Posting list of each term: offset into postings, and number of cards in the list
+    private final int[] offsets, counts;
+    // Gap-encoded (card id, term count) pairs, back to back
+    private final byte[] postings;
+
+    /**
+     * Builds the index for the text of every card.
+     * @param texts free text indexed by card id
+     */
+    TextIndex(String[] texts) {
+        this.lengths = new int[texts.length];
+        // Collect each term's (card, count) pairs; cards are visited in order, so every list comes out ascending
+        HashMap<String, Postings.IntList> lists = new HashMap<>();
+        HashMap<String, int[]> termCounts = new HashMap<>();
+        long totalLength = 0;
+        for (int id = 0; id < texts.length; id++) {
+            termCounts.clear();
+            for (String term : tokenize(texts[id])) {
+                this.lengths[id]++;
+                int[] count = termCounts.get(term);
+                if (count == null) {
+                    termCounts.put(term, new int[] {1});
+                } else {
+                    count[0]++;
+                }
+            }
+            totalLength += this.lengths[id];
+            for (String term : termCounts.keySet()) {
+                Postings.IntList list = lists.get(term);
+                if (list == null) {
+                    list = new Postings.IntList();
+                    lists.put(term, list);
+                }
+                list.add(id);
+                list.add(termCounts.get(term)[0]);
+            }
+        }
+        this.meanLength = texts.length == 0 ? 0 : Math.max((float) totalLength / texts.length, 1);
+
+        this.terms = lists.keySet().toArray(new String[0]);
+        Arrays.sort(this.terms);
+        this.offsets = new int[this.terms.length];
+        this.counts = new int[this.terms.length];
+        Postings.Writer postings = new Postings.Writer();
+        for (int t = 0; t < this.terms.length; t++) {
+            Postings.IntList list = lists.get(this.terms[t]);
+            this.offsets[t] = postings.length();
+            this.counts[t] = list.size / 2;
+            int previous = -1;
+            for (int i = 0; i < list.size; i += 2) {
+                postings.writeVarint(list.values[i] - previous);
+                postings.writeVarint(list.values[i + 1]);
+                previous = list.values[i];
+            }
+        }
+        this.postings = postings.toByteArray();
+    }
+
+    /**
+     * Finds the cards whose text has every word of a query, best match first.
+     * @param query the cleaned query
+     * @return ids of the matching cards by descending BM25 score, ties in catalog order; empty if
+     *         the query has no word worth looking up
+     */
+    int[] find(String query) {
+        ArrayList<String> words = queryWords(query);
+        if (words.isEmpty()) {
+            return new int[0];
+        }
+        float[] scores = new float[this.lengths.length];
+        // Number of query words each card has matched so far; a card that misses one drops out
+        int[] matched = new int[this.lengths.length];
+        for (int w = 0; w < words.size(); w++) {
+            String word = words.get(w);
+            int low, high;
+            if (w == words.size() - 1) {
+                // The last word may still be being typed, so it matches every term it starts
+                low = TokenIndex.lowerBound(this.terms, word);
+                high = TokenIndex.prefixEnd(this.terms, word);
+            } else {
+                low = Arrays.binarySearch(this.terms, word);
+                high = low + 1;
+            }
+            if (low < 0 || low >= high) {
+                return new int[0];
+            }
+            boolean any = false;
+            for (int t = low; t < high; t++) {
+                any |= this.score(t, w, scores, matched);
+            }
+            if (!any) {
+                return new int[0];
+            }
+        }
+
+        // Higher scores first, then lower ids; positive float bits sort like the floats
+        long[] ranked = new long[this.lengths.length];
+        int size = 0;
+        for (int id = 0; id < matched.length; id++) {
+            if (matched[id] == words.size()) {
+                ranked[size++] = ((long) Float.floatToIntBits(scores[id]) << 32) | (Integer.MAX_VALUE - id);
+            }
+        }
+        Arrays.sort(ranked, 0, size);
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = Integer.MAX_VALUE - (int) ranked[size - 1 - i];
+        }
+        return ids;
+    }
+
+    /**
+     * Adds the BM25 contribution of one term to the cards that have matched every earlier query word.
+     * @param term index of the term
+     * @param word index of the query word the term stands for
+     * @param scores scores by card id
+     * @param matched number of query words matched by card id
+     * @return true if any card is still in the running
+     */
+    private boolean score(int term, int word, float[] scores, int[] matched) {
+        int documents = this.lengths.length, frequency = this.counts[term];
+        float idf = (float) Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+        boolean any = false;
+        Postings.Reader reader = new Postings.Reader(this.postings, this.offsets[term]);
+        int id = -1;
+        for (int i = 0; i < frequency; i++) {
+            // Decode the gap to the next card, then the number of uses
+            id += reader.readVarint();
+            int count = reader.readVarint();
+            // Several terms can stand for the last word, so a card may already have matched it
+            if (matched[id] == word) {
+                matched[id] = word + 1;
+            } else if (matched[id] != word + 1) {
+                continue;
+            }
+            float norm = K1 * (1 - B + B * this.lengths[id] / this.meanLength);
+            scores[id] += idf * count * (K1 + 1) / (count + norm);
+            any = true;
+        }
+        return any;
+    }
+
+    /**
+     * Returns the number of distinct terms, for sizing.
+     * @return the term count
+     */
+    int termCount() {
+        return this.terms.length;
+    }
+
+    /**
+     * Returns the size of the encoded posting lists, for sizing.
+     * @return the number of bytes
+     */
+    int postingBytes() {
+        return this.postings.length;
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits, leaving out stop words.
+     * Apostrophes are dropped rather than splitting, so "opponent's" is one word.
+     * @param text the text
+     * @return its words, in order
+     */
+    static ArrayList<String> tokenize(String text) {
+        ArrayList<String> words = split(text);
+        ArrayList<String> kept = new ArrayList<>(words.size());
+        for (String word : words) {
+            if (!STOP_WORDS.contains(word)) {
+                kept.add(word);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Splits a query into the words to look up. Stop words are left out of the completed words only;
+     * the last word may still be being typed, so it is kept whatever it is.
+     * @param query the cleaned query
+     * @return its words, in order, the one matched as a prefix last
+     */
+    static ArrayList<String> queryWords(String query) {
+        ArrayList<String> words = split(query);
+        ArrayList<String> kept = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            if (i == words.size() - 1 || !STOP_WORDS.contains(words.get(i))) {
+                kept.add(words.get(i));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits, stop words included.
+     * @param text the text
+     * @return its words, in order
+     */
+    private static ArrayList<String> split(String text) {
+        ArrayList<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i == text.length() ? ' ' : text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (c != '\'' && c != '\u2019' && word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+}
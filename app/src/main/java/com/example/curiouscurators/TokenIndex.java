@@ -0,0 +1,203 @@
+package com.example.curiouscurators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Word-start index over one sort index of the {@link CardStore}.
+ * Every key is split into words, and the distinct words of all keys form one sorted token table.
+ * Each token lists the runs of equal keys ("groups") of the sort index that contain it, so typing
+ * "lugia" finds "shining lugia" and "sugimori" finds "ken sugimori". A query of several words
+ * matches the keys that have a word starting with each of them, in any order.
+ *
+ * The tokens starting with a query word are one contiguous run of the table, found by two binary
+ * searches; their groups are marked in a bitset, and the bitsets of the query words are intersected.
+ */
+final class TokenIndex extends KeyIndex {
+    // Appended to a prefix to get an upper bound for every token that starts with it
+    private static final String PREFIX_END = "\uFFFF";
+
+    // First sort position of each group, plus the end of the index
+    private final int[] groupStart;
+    // Distinct words of all keys, sorted
+    private final String[] tokens;
+    // Groups containing each token, as a range of tokenGroups per token, ascending within it
+    private final int[] groupOffsets, tokenGroups;
+
+    /**
+     * Builds the index for a sort index.
+     * @param keys keys indexed by card id
+     * @param sorted card ids in key order
+     */
+    TokenIndex(String[] keys, int[] sorted) {
+        super(keys, sorted);
+        this.groupStart = groupStarts(keys, sorted);
+        int groups = this.groupStart.length - 1;
+
+        // Collect the groups of every word; groups are visited in order, so every list comes out ascending
+        HashMap<String, Postings.IntList> lists = new HashMap<>();
+        for (int group = 0; group < groups; group++) {
+            for (String token : split(this.key(this.groupStart[group]))) {
+                Postings.IntList list = lists.get(token);
+                if (list == null) {
+                    list = new Postings.IntList();
+                    lists.put(token, list);
+                }
+                // A word that repeats within a key adds its group once
+                if (list.size == 0 || list.values[list.size - 1] != group) {
+                    list.add(group);
+                }
+            }
+        }
+        this.tokens = lists.keySet().toArray(new String[0]);
+        Arrays.sort(this.tokens);
+        this.groupOffsets = new int[this.tokens.length + 1];
+        for (int t = 0; t < this.tokens.length; t++) {
+            this.groupOffsets[t + 1] = this.groupOffsets[t] + lists.get(this.tokens[t]).size;
+        }
+        this.tokenGroups = new int[this.groupOffsets[this.tokens.length]];
+        for (int t = 0; t < this.tokens.length; t++) {
+            int from = this.groupOffsets[t];
+            System.arraycopy(lists.get(this.tokens[t]).values, 0, this.tokenGroups, from, this.groupOffsets[t + 1] - from);
+        }
+    }
+
+    /**
+     * Finds the cards whose key has a word starting with each word of a query.
+     * @param query the cleaned query; an empty query matches every card
+     * @return ids of the matching cards, in the order of the sort index
+     */
+    int[] find(String query) {
+        String[] words = split(query);
+        if (words.length == 0) {
+            return this.sorted.clone();
+        }
+        int groups = this.groupStart.length - 1;
+        // Narrow with the rarest word first, so the others can stop as soon as nothing is left
+        int[] lows = new int[words.length], highs = new int[words.length];
+        Integer[] order = new Integer[words.length];
+        for (int w = 0; w < words.length; w++) {
+            lows[w] = lowerBound(this.tokens, words[w]);
+            highs[w] = prefixEnd(this.tokens, words[w]);
+            order[w] = w;
+        }
+        final int[] postingCounts = new int[words.length];
+        for (int w = 0; w < words.length; w++) {
+            postingCounts[w] = this.groupOffsets[highs[w]] - this.groupOffsets[lows[w]];
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(postingCounts[a], postingCounts[b]);
+            }
+        });
+
+        long[] matched = null;
+        for (int w : order) {
+            if (postingCounts[w] == 0) {
+                return new int[0];
+            }
+            long[] marked = new long[(groups + 63) >>> 6];
+            for (int i = this.groupOffsets[lows[w]]; i < this.groupOffsets[highs[w]]; i++) {
+                int group = this.tokenGroups[i];
+                marked[group >>> 6] |= 1L << group;
+            }
+            if (matched == null) {
+                matched = marked;
+                continue;
+            }
+            boolean any = false;
+            for (int i = 0; i < matched.length; i++) {
+                matched[i] &= marked[i];
+                any |= matched[i] != 0;
+            }
+            if (!any) {
+                return new int[0];
+            }
+        }
+
+        // Expand the matched groups, in order, into their sort positions
+        int size = 0;
+        for (int i = 0; i < matched.length; i++) {
+            long word = matched[i];
+            while (word != 0) {
+                int group = (i << 6) | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                size += this.groupStart[group + 1] - this.groupStart[group];
+            }
+        }
+        int[] result = new int[size];
+        int next = 0;
+        for (int i = 0; i < matched.length; i++) {
+            long word = matched[i];
+            while (word != 0) {
+                int group = (i << 6) | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                int start = this.groupStart[group], end = this.groupStart[group + 1];
+                System.arraycopy(this.sorted, start, result, next, end - start);
+                next += end - start;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of distinct words, for sizing.
+     * @return the token count
+     */
+    int tokenCount() {
+        return this.tokens.length;
+    }
+
+    /**
+     * Splits a cleaned key or query into words.
+     * @param text the text
+     * @return its non-empty words
+     */
+    static String[] split(String text) {
+        ArrayList<String> words = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            // Spaces and hyphens separate words, so "ho-oh" is found by "oh" as well
+            if (i == text.length() || text.charAt(i) == ' ' || text.charAt(i) == '-') {
+                if (i > start) {
+                    words.add(text.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Finds the first of a sorted table of words that is not less than a value.
+     * @param tokens sorted words
+     * @param value the value
+     * @return the index of that word, or the word count if every word is less
+     */
+    static int lowerBound(String[] tokens, String value) {
+        int low = 0, high = tokens.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens[middle].compareTo(value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the end of the run of a sorted table of words that start with a prefix; the run
+     * begins at {@link #lowerBound} of the prefix.
+     * @param tokens sorted words
+     * @param prefix the prefix
+     * @return the index after the last word starting with the prefix
+     */
+    static int prefixEnd(String[] tokens, String prefix) {
+        return lowerBound(tokens, prefix + PREFIX_END);
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.curiouscurators;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Trigram inverted index over one sort index of the {@link CardStore}, for substring matching.
+ * Equal keys sit next to each other in a sort index, so the index works on runs of equal keys
+ * ("groups") rather than on cards: every distinct key is indexed once, and a matching group
+ * contributes its whole run of sort positions.
+ *
+ * Each posting list holds the ascending group numbers whose key contains a trigram, stored as
+ * varint-encoded gaps in one shared byte array. A query of three or more characters intersects the
+ * lists of its trigrams, shortest first, and then checks the surviving keys with {@code contains},
+ * since sharing every trigram does not mean the trigrams are in the right order. Shorter queries
+ * have no trigram to look up and scan the distinct keys instead.
+ */
+final class TrigramIndex extends KeyIndex {
+    // First sort position of each group, plus the end of the index
+    private final int[] groupStart;
+    // Distinct trigrams in ascending order, three chars packed into the low 48 bits
+    private final long[] trigrams;
+    // Posting list of each trigram: offset into postings, and number of groups in the list
+    private final int[] offsets, counts;
+    // Gap-encoded posting lists, back to back
+    private final byte[] postings;
+
+    /**
+     * Builds the index for a sort index.
+     * @param keys keys indexed by card id
+     * @param sorted card ids in key order
+     */
+    TrigramIndex(String[] keys, int[] sorted) {
+        super(keys, sorted);
+        this.groupStart = groupStarts(keys, sorted);
+        int groups = this.groupStart.length - 1;
+
+        // Collect each group's trigrams; groups are visited in order, so every list comes out ascending
+        HashMap<Long, Postings.IntList> lists = new HashMap<>();
+        for (int group = 0; group < groups; group++) {
+            String key = this.key(this.groupStart[group]);
+            for (int i = 0; i + 3 <= key.length(); i++) {
+                Long trigram = trigram(key, i);
+                Postings.IntList list = lists.get(trigram);
+                if (list == null) {
+                    list = new Postings.IntList();
+                    lists.put(trigram, list);
+                }
+                // A key that repeats a trigram adds its group once
+                if (list.size == 0 || list.values[list.size - 1] != group) {
+                    list.add(group);
+                }
+            }
+        }
+
+        this.trigrams = new long[lists.size()];
+        int next = 0;
+        for (Long trigram : lists.keySet()) {
+            this.trigrams[next++] = trigram;
+        }
+        Arrays.sort(this.trigrams);
+        this.offsets = new int[this.trigrams.length];
+        this.counts = new int[this.trigrams.length];
+        Postings.Writer postings = new Postings.Writer();
+        for (int t = 0; t < this.trigrams.length; t++) {
+            Postings.IntList list = lists.get(this.trigrams[t]);
+            this.offsets[t] = postings.length();
+            this.counts[t] = list.size;
+            int previous = -1;
+            for (int i = 0; i < list.size; i++) {
+                postings.writeVarint(list.values[i] - previous);
+                previous = list.values[i];
+            }
+        }
+        this.postings = postings.toByteArray();
+    }
+
+    /**
+     * Finds the cards whose key contains a substring.
+     * @param query the cleaned substring
+     * @return ids of the matching cards, in the order of the sort index
+     */
+    int[] find(String query) {
+        if (query.isEmpty()) {
+            return this.sorted.clone();
+        }
+        int groups = this.groupStart.length - 1;
+        int[] candidates;
+        int candidateCount;
+        if (query.length() < 3) {
+            candidates = null;
+            candidateCount = groups;
+        } else {
+            // Look up every trigram of the query; one that never occurs rules out every key
+            int[] lists = new int[query.length() - 2];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = Arrays.binarySearch(this.trigrams, trigram(query, i));
+                if (lists[i] < 0) {
+                    return new int[0];
+                }
+            }
+            Integer[] order = new Integer[lists.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = lists[i];
+            }
+            // Start from the shortest list, so every later step only narrows a small set
+            final int[] counts = this.counts;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Integer.compare(counts[a], counts[b]);
+                }
+            });
+            candidates = this.decode(order[0]);
+            candidateCount = candidates.length;
+            for (int i = 1; i < order.length && candidateCount > 0; i++) {
+                // A trigram that occurs twice in the query only needs one pass
+                if (order[i].equals(order[i - 1])) {
+                    continue;
+                }
+                candidateCount = this.intersect(order[i], candidates, candidateCount);
+            }
+        }
+
+        // Verify the candidates and expand each matching group into its sort positions
+        int[] result = new int[16];
+        int size = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int group = candidates == null ? i : candidates[i];
+            int start = this.groupStart[group], end = this.groupStart[group + 1];
+            if (!this.key(start).contains(query)) {
+                continue;
+            }
+            if (size + end - start > result.length) {
+                result = Arrays.copyOf(result, Math.max(result.length * 2, size + end - start));
+            }
+            System.arraycopy(this.sorted, start, result, size, end - start);
+            size += end - start;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Returns the size of the encoded posting lists, for sizing.
+     * @return the byte count
+     */
+    int postingBytes() {
+        return this.postings.length;
+    }
+
+    /**
+     * Decodes a whole posting list.
+     * @param list index of the trigram
+     * @return the ascending group numbers
+     */
+    private int[] decode(int list) {
+        int[] groups = new int[this.counts[list]];
+        Postings.Reader reader = new Postings.Reader(this.postings, this.offsets[list]);
+        int value = -1;
+        for (int i = 0; i < groups.length; i++) {
+            value += reader.readVarint();
+            groups[i] = value;
+        }
+        return groups;
+    }
+
+    /**
+     * Keeps only the candidates that also appear in a posting list, decoding it as a stream.
+     * @param list index of the trigram
+     * @param candidates ascending group numbers; the survivors are moved to the front
+     * @param candidateCount number of candidates in use
+     * @return the number of survivors
+     */
+    private int intersect(int list, int[] candidates, int candidateCount) {
+        Postings.Reader reader = new Postings.Reader(this.postings, this.offsets[list]);
+        int remaining = this.counts[list];
+        int value = -1;
+        int kept = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int candidate = candidates[i];
+            // Advance the list to the first group at or after the candidate
+            while (value < candidate && remaining > 0) {
+                value += reader.readVarint();
+                remaining--;
+            }
+            if (value == candidate) {
+                candidates[kept++] = candidate;
+            } else if (value < candidate) {
+                // The list ran out before reaching this candidate, so no later one can match either
+                break;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Packs the three characters starting at an index into a long.
+     * @param s the string
+     * @param i index of the first character
+     * @return the packed trigram
+     */
+    private static long trigram(CharSequence s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.curiouscurators;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the compressed bitmap: every operation must agree with plain boolean arrays, with
+ * chunks on both sides of the 4096 ids where a chunk switches from a sorted array to a bitset.
+ */
+public class CardBitmapTest {
+    // Three chunks' worth of ids
+    private static final int UNIVERSE = 3 * 65536;
+    // Chunk sizes around the switch, plus empty, tiny and full chunks
+    private static final int[] CHUNK_SIZES = {0, 1, 100, 4095, 4096, 4097, 6000, 65535, 65536};
+
+    @Test
+    public void operations_matchBooleanArrays() {
+        Random random = new Random(7);
+        for (int round = 0; round < 60; round++) {
+            boolean[] a = randomSet(random), b = randomSet(random);
+            CardBitmap x = build(a), y = build(b);
+            assertSet(a, x);
+            assertSet(b, y);
+            boolean[] and = new boolean[UNIVERSE], or = new boolean[UNIVERSE], andNot = new boolean[UNIVERSE];
+            for (int id = 0; id < UNIVERSE; id++) {
+                and[id] = a[id] && b[id];
+                or[id] = a[id] || b[id];
+                andNot[id] = a[id] && !b[id];
+            }
+            assertSet(and, x.and(y));
+            assertSet(and, y.and(x));
+            assertSet(or, x.or(y));
+            assertSet(or, y.or(x));
+            assertSet(andNot, x.andNot(y));
+        }
+    }
+
+    @Test
+    public void chunks_switchFormAtArrayMax() throws Exception {
+        assertTrue(chunk(build(firstIds(4095)), 0) instanceof char[]);
+        assertTrue(chunk(build(firstIds(4096)), 0) instanceof char[]);
+        assertTrue(chunk(build(firstIds(4097)), 0) instanceof long[]);
+
+        // Two arrays whose union passes the limit become a bitset
+        boolean[] evens = new boolean[UNIVERSE], odds = new boolean[UNIVERSE];
+        for (int id = 0; id < 4098; id++) {
+            (id % 2 == 0 ? evens : odds)[id] = true;
+        }
+        CardBitmap union = build(evens).or(build(odds));
+        assertTrue(chunk(union, 0) instanceof long[]);
+        assertEquals(4098, union.cardinality());
+
+        // Two bitsets whose intersection falls to the limit become an array
+        boolean[] low = firstIds(5000), high = new boolean[UNIVERSE];
+        for (int id = 5000 - 4096; id < 9000; id++) {
+            high[id] = true;
+        }
+        CardBitmap both = build(low).and(build(high));
+        assertTrue(chunk(both, 0) instanceof char[]);
+        assertEquals(4096, both.cardinality());
+        CardBitmap rest = build(high).andNot(build(firstIds(9000 - 4097)));
+        assertTrue(chunk(rest, 0) instanceof long[]);
+        assertEquals(4097, rest.cardinality());
+    }
+
+    @Test
+    public void emptySets() {
+        CardBitmap empty = new CardBitmap.Builder().build();
+        assertSame(CardBitmap.EMPTY, empty);
+        assertTrue(empty.isEmpty());
+        assertEquals(0, empty.cardinality());
+        assertArrayEquals(new int[0], empty.toArray());
+        assertArrayEquals(new int[0], empty.page(3, 10));
+        assertTrue(CardBitmap.range(0).isEmpty());
+        CardBitmap some = CardBitmap.range(5000);
+        assertArrayEquals(new int[0], some.and(empty).toArray());
+        assertArrayEquals(some.toArray(), some.or(empty).toArray());
+        assertArrayEquals(some.toArray(), some.andNot(empty).toArray());
+        assertTrue(empty.andNot(some).isEmpty());
+        // A chunk emptied by an operation is dropped rather than kept empty
+        assertTrue(some.andNot(some).isEmpty());
+    }
+
+    @Test
+    public void range_holdsEveryIdBelowTheBound() {
+        for (int size : new int[] {1, 4096, 4097, 65536, 65537}) {
+            boolean[] expected = firstIds(size);
+            assertSet(expected, CardBitmap.range(size));
+        }
+    }
+
+    /**
+     * Checks a bitmap against a boolean array through every read method.
+     */
+    private static void assertSet(boolean[] expected, CardBitmap actual) {
+        int[] ids = new int[UNIVERSE];
+        int size = 0;
+        for (int id = 0; id < UNIVERSE; id++) {
+            if (expected[id]) {
+                ids[size++] = id;
+            }
+            assertEquals("contains " + id, expected[id], actual.contains(id));
+        }
+        ids = Arrays.copyOf(ids, size);
+        assertEquals(size, actual.cardinality());
+        assertEquals(size == 0, actual.isEmpty());
+        assertArrayEquals(ids, actual.toArray());
+        // Pages that start inside, at the edges of and past the chunks
+        for (int offset : new int[] {0, 1, 4095, 4096, 4097, 65536, size - 1, size, size + 1}) {
+            if (offset < 0) {
+                continue;
+            }
+            int from = Math.min(offset, size);
+            int[] page = Arrays.copyOfRange(ids, from, Math.min(from + 50, size));
+            assertArrayEquals("page at " + offset, page, actual.page(offset, 50));
+        }
+    }
+
+    private static boolean[] randomSet(Random random) {
+        boolean[] set = new boolean[UNIVERSE];
+        for (int chunk = 0; chunk < 3; chunk++) {
+            int count = CHUNK_SIZES[random.nextInt(CHUNK_SIZES.length)];
+            // Dense chunks are mostly a solid run, so the arrays and bitsets overlap in interesting ways
+            int base = chunk * 65536;
+            if (random.nextBoolean()) {
+                int start = random.nextInt(65536 - count + 1);
+                for (int i = 0; i < count; i++) {
+                    set[base + start + i] = true;
+                }
+            } else {
+                int placed = 0;
+                while (placed < count) {
+                    int id = base + random.nextInt(65536);
+                    if (!set[id]) {
+                        set[id] = true;
+                        placed++;
+                    }
+                }
+            }
+        }
+        return set;
+    }
+
+    private static boolean[] firstIds(int count) {
+        boolean[] set = new boolean[UNIVERSE];
+        Arrays.fill(set, 0, count, true);
+        return set;
+    }
+
+    private static CardBitmap build(boolean[] set) {
+        CardBitmap.Builder builder = new CardBitmap.Builder();
+        for (int id = 0; id < set.length; id++) {
+            if (set[id]) {
+                builder.add(id);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads the storage of one chunk, to see which form it was given.
+     */
+    private static Object chunk(CardBitmap bitmap, int index) throws Exception {
+        Field chunks = CardBitmap.class.getDeclaredField("chunks");
+        chunks.setAccessible(true);
+        return ((Object[]) chunks.get(bitmap))[index];
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.curiouscurators;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for facet queries: every query must match the same cards as testing each card's columns
+ * one by one.
+ */
+public class CardQueryTest {
+    // More than one chunk of cards, so the facet bitmaps mix arrays and bitsets
+    private static final int SIZE = 70000;
+    private static final String[] CATEGORIES = {"Pokemon", "Pokemon", "Pokemon", "Trainer", "Energy"};
+    private static final String[] TYPES = {"Fire", "Water", "Grass", "Psychic"};
+    private static final String[] RARITIES = {"Common", "Uncommon", "Rare", "Rare Holo"};
+    private static final String[] SETS = {"base1", "base2", "jungle", "fossil", "sv1", "sv2"};
+    private static final String[] MARKS = {"", "D", "E", "F", "G"};
+
+    private final String[] categories = new String[SIZE], rarities = new String[SIZE];
+    private final String[] setIds = new String[SIZE], illustrators = new String[SIZE];
+    private final String[] regulationMarks = new String[SIZE];
+    private final String[][] types = new String[SIZE][];
+    private final CardFacets facets;
+
+    public CardQueryTest() {
+        Random random = new Random(8);
+        String[] globalIds = new String[SIZE], names = new String[SIZE], keys = new String[SIZE];
+        int[] hps = new int[SIZE];
+        for (int id = 0; id < SIZE; id++) {
+            globalIds[id] = "card-" + id;
+            names[id] = keys[id] = "card " + id;
+            this.categories[id] = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            this.rarities[id] = RARITIES[random.nextInt(RARITIES.length)];
+            this.setIds[id] = SETS[random.nextInt(SETS.length)];
+            // A few thousand cards per illustrator, near the point where a chunk changes form
+            this.illustrators[id] = "artist " + random.nextInt(12);
+            if (this.categories[id].equals("Pokemon")) {
+                hps[id] = 10 * (1 + random.nextInt(30));
+                this.types[id] = random.nextInt(8) == 0
+                        ? new String[] {TYPES[0], TYPES[1 + random.nextInt(3)]}
+                        : new String[] {TYPES[random.nextInt(TYPES.length)]};
+                this.regulationMarks[id] = MARKS[random.nextInt(MARKS.length)];
+            } else {
+                hps[id] = -1;
+                this.types[id] = CardStore.NO_TYPES;
+                this.regulationMarks[id] = "";
+            }
+        }
+        int[] sorted = CardStore.sortedBy(keys, false);
+        CardStore store = new CardStore(globalIds, names, this.illustrators, this.setIds, this.setIds,
+                this.categories, this.rarities, hps, this.types, this.regulationMarks,
+                keys, keys, keys, sorted, sorted, sorted);
+        this.facets = new CardFacets(store);
+    }
+
+    @Test
+    public void evaluate_matchesColumnScan() {
+        Random random = new Random(9);
+        for (int round = 0; round < 150; round++) {
+            boolean[] expected = new boolean[SIZE];
+            CardQuery query = this.randomQuery(random, 3, expected);
+            assertArrayEquals("round " + round, ids(expected), query.evaluate(this.facets).toArray());
+        }
+    }
+
+    @Test
+    public void and_subtractsNegatedParts() {
+        CardQuery fire = CardQuery.is(CardFacets.Facet.Type, "Fire");
+        CardQuery rare = CardQuery.is(CardFacets.Facet.Rarity, "Rare");
+        boolean[] fireNotRare = new boolean[SIZE], notFireNotRare = new boolean[SIZE];
+        for (int id = 0; id < SIZE; id++) {
+            boolean isFire = Arrays.asList(this.types[id]).contains("Fire");
+            boolean isRare = this.rarities[id].equals("Rare");
+            fireNotRare[id] = isFire && !isRare;
+            notFireNotRare[id] = !isFire && !isRare;
+        }
+        assertArrayEquals(ids(fireNotRare), CardQuery.and(CardQuery.not(rare), fire).evaluate(this.facets).toArray());
+        // With only negated parts, the subtraction starts from every card
+        assertArrayEquals(ids(notFireNotRare),
+                CardQuery.and(CardQuery.not(fire), CardQuery.not(rare)).evaluate(this.facets).toArray());
+        assertArrayEquals(CardQuery.is(CardFacets.Facet.Type, "Fire").evaluate(this.facets).toArray(),
+                CardQuery.not(CardQuery.not(fire)).evaluate(this.facets).toArray());
+    }
+
+    @Test
+    public void emptyQueries() {
+        int[] every = ids(filled(true));
+        assertArrayEquals(every, CardQuery.all().evaluate(this.facets).toArray());
+        assertArrayEquals(every, CardQuery.and().evaluate(this.facets).toArray());
+        assertArrayEquals(new int[0], CardQuery.or().evaluate(this.facets).toArray());
+        assertArrayEquals(new int[0], CardQuery.is(CardFacets.Facet.Set, "missing").evaluate(this.facets).toArray());
+        // Missing regulation marks are not a value of their own
+        assertArrayEquals(new int[0], CardQuery.is(CardFacets.Facet.RegulationMark, "").evaluate(this.facets).toArray());
+        assertArrayEquals(every, CardQuery.not(CardQuery.or()).evaluate(this.facets).toArray());
+        assertArrayEquals(new int[0], CardQuery.not(CardQuery.all()).evaluate(this.facets).toArray());
+    }
+
+    @Test
+    public void values_listsEachFacet() {
+        assertEquals(Arrays.asList("Energy", "Pokemon", "Trainer"), this.facets.values(CardFacets.Facet.Category));
+        assertEquals(Arrays.asList("D", "E", "F", "G"), this.facets.values(CardFacets.Facet.RegulationMark));
+        assertEquals(Arrays.asList("Fire", "Grass", "Psychic", "Water"), this.facets.values(CardFacets.Facet.Type));
+    }
+
+    /**
+     * Builds a random query and marks the cards it should match.
+     * @param depth how many more levels of and/or/not may be nested
+     * @param expected filled with the cards the query matches
+     */
+    private CardQuery randomQuery(Random random, int depth, boolean[] expected) {
+        int kind = random.nextInt(depth == 0 ? 2 : 6);
+        if (kind < 2) {
+            CardFacets.Facet facet = CardFacets.Facet.values()[random.nextInt(CardFacets.Facet.values().length)];
+            String[] values = this.sampleValues(facet);
+            if (kind == 0) {
+                String value = values[random.nextInt(values.length)];
+                for (int id = 0; id < SIZE; id++) {
+                    expected[id] = this.has(facet, id, value);
+                }
+                return CardQuery.is(facet, value);
+            }
+            String[] chosen = {values[random.nextInt(values.length)], values[random.nextInt(values.length)]};
+            for (int id = 0; id < SIZE; id++) {
+                expected[id] = this.has(facet, id, chosen[0]) || this.has(facet, id, chosen[1]);
+            }
+            return CardQuery.anyOf(facet, chosen);
+        }
+        if (kind == 2) {
+            boolean[] inner = new boolean[SIZE];
+            CardQuery query = this.randomQuery(random, depth - 1, inner);
+            for (int id = 0; id < SIZE; id++) {
+                expected[id] = !inner[id];
+            }
+            return CardQuery.not(query);
+        }
+        if (kind == 5) {
+            Arrays.fill(expected, true);
+            return CardQuery.all();
+        }
+        boolean and = kind == 3;
+        CardQuery[] parts = new CardQuery[1 + random.nextInt(3)];
+        Arrays.fill(expected, and);
+        for (int i = 0; i < parts.length; i++) {
+            boolean[] part = new boolean[SIZE];
+            parts[i] = this.randomQuery(random, depth - 1, part);
+            for (int id = 0; id < SIZE; id++) {
+                expected[id] = and ? expected[id] && part[id] : expected[id] || part[id];
+            }
+        }
+        return and ? CardQuery.and(parts) : CardQuery.or(parts);
+    }
+
+    /**
+     * Lists values to query a facet with, including one no card has.
+     */
+    private String[] sampleValues(CardFacets.Facet facet) {
+        switch (facet) {
+            case Category: return new String[] {"Pokemon", "Trainer", "Energy", "Item"};
+            case Type: return new String[] {"Fire", "Water", "Grass", "Psychic", "Dragon"};
+            case Rarity: return new String[] {"Common", "Uncommon", "Rare", "Rare Holo", "Promo"};
+            case Set: return new String[] {"base1", "base2", "jungle", "fossil", "sv1", "sv2", "sv9"};
+            case Illustrator: return new String[] {"artist 0", "artist 5", "artist 11", "artist 12"};
+            default: return new String[] {"D", "E", "F", "G", "H"};
+        }
+    }
+
+    /**
+     * Tests one card's column for a facet value.
+     */
+    private boolean has(CardFacets.Facet facet, int id, String value) {
+        switch (facet) {
+            case Category: return this.categories[id].equals(value);
+            case Type: return Arrays.asList(this.types[id]).contains(value);
+            case Rarity: return this.rarities[id].equals(value);
+            case Set: return this.setIds[id].equals(value);
+            case Illustrator: return this.illustrators[id].equals(value);
+            default: return this.regulationMarks[id].equals(value);
+        }
+    }
+
+    private static boolean[] filled(boolean value) {
+        boolean[] set = new boolean[SIZE];
+        Arrays.fill(set, value);
+        return set;
+    }
+
+    private static int[] ids(boolean[] set) {
+        int[] ids = new int[SIZE];
+        int size = 0;
+        for (int id = 0; id < SIZE; id++) {
+            if (set[id]) {
+                ids[size++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.curiouscurators;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the BK-tree: every lookup must return the same cards, in the same order, as computing
+ * the edit distance from the query to every key and every word of every key.
+ */
+public class FuzzyIndexTest {
+    @Test
+    public void find_matchesLinearScan() {
+        Random random = new Random(6);
+        for (int round = 0; round < 200; round++) {
+            String[] keys = PrefixIndexTest.randomKeys(random, random.nextInt(60));
+            int[] sorted = CardStore.sortedBy(keys, false);
+            FuzzyIndex index = new FuzzyIndex(keys, sorted);
+            for (int query = 0; query < 30; query++) {
+                String text = query % 2 == 0 || keys.length == 0
+                        ? PrefixIndexTest.randomKey(random, 8)
+                        : keys[random.nextInt(keys.length)];
+                int maxDistance = random.nextInt(4);
+                assertArrayEquals(text + " within " + maxDistance,
+                        scan(keys, sorted, text, maxDistance), index.find(text, maxDistance));
+            }
+        }
+    }
+
+    @Test
+    public void find_matchesWordsOfKeys() {
+        String[] keys = {"dark charizard", "charizard", "ho-oh", "shining gyarados", "charmander"};
+        int[] sorted = CardStore.sortedBy(keys, false);
+        FuzzyIndex index = new FuzzyIndex(keys, sorted);
+        // Both charizards are one edit away, through the whole key and through a word, and keep sort order
+        assertArrayEquals(new int[] {1, 0}, index.find("charzard", 1));
+        assertArrayEquals(new int[] {2}, index.find("ooh", 1));
+        assertArrayEquals(new int[] {3}, index.find("gyrados", 1));
+        assertArrayEquals(new int[0], index.find("gyrados", 0));
+    }
+
+    @Test
+    public void find_ordersByDistanceThenSortOrder() {
+        String[] keys = {"abcd", "abce", "abcdef", "abcd"};
+        int[] sorted = CardStore.sortedBy(keys, false);
+        // The two "abcd" cards are exact, "abce" is one edit away and "abcdef" two
+        assertArrayEquals(new int[] {0, 3, 1, 2}, new FuzzyIndex(keys, sorted).find("abcd", 2));
+    }
+
+    @Test
+    public void find_onEmptyInputMatchesNothing() {
+        assertArrayEquals(new int[0], new FuzzyIndex(new String[0], new int[0]).find("abc", 2));
+        String[] keys = {"", "abc"};
+        FuzzyIndex index = new FuzzyIndex(keys, CardStore.sortedBy(keys, false));
+        assertArrayEquals(new int[0], index.find("", 2));
+        // An empty key has no term, so it is never a near miss
+        assertArrayEquals(new int[] {1}, index.find("ab", 2));
+    }
+
+    @Test
+    public void maxDistanceFor_growsWithLength() {
+        assertEquals(0, FuzzyIndex.maxDistanceFor(0));
+        assertEquals(0, FuzzyIndex.maxDistanceFor(3));
+        assertEquals(1, FuzzyIndex.maxDistanceFor(4));
+        assertEquals(1, FuzzyIndex.maxDistanceFor(7));
+        assertEquals(2, FuzzyIndex.maxDistanceFor(8));
+        assertEquals(2, FuzzyIndex.maxDistanceFor(30));
+    }
+
+    /**
+     * Lists the cards within an edit distance of a query through their key or one of its words,
+     * closest first and then in sort index order.
+     */
+    private static int[] scan(String[] keys, int[] sorted, String query, int maxDistance) {
+        ArrayList<Integer> ids = new ArrayList<>();
+        if (query.isEmpty()) {
+            return new int[0];
+        }
+        for (int distance = 0; distance <= maxDistance; distance++) {
+            for (int id : sorted) {
+                if (closest(keys[id], query) == distance) {
+                    ids.add(id);
+                }
+            }
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the smallest edit distance from a query to a key or any of its words.
+     */
+    private static int closest(String key, String query) {
+        int best = Integer.MAX_VALUE;
+        if (!key.isEmpty()) {
+            best = levenshtein(key, query);
+        }
+        for (String word : TokenIndex.split(key)) {
+            best = Math.min(best, levenshtein(word, query));
+        }
+        return best;
+    }
+
+    /**
+     * Computes the edit distance with the full dynamic programming table.
+     */
+    private static int levenshtein(String a, String b) {
+        int[][] table = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    table[i][j] = i + j;
+                } else {
+                    int replace = table[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                    table[i][j] = Math.min(replace, Math.min(table[i - 1][j], table[i][j - 1]) + 1);
+                }
+            }
+        }
+        return table[a.length()][b.length()];
+    }
+}
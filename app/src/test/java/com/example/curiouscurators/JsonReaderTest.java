@@ -0,0 +1,154 @@
+package com.example.curiouscurators;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the pull parser: it must read the same values as the tree parser, skip values whole,
+ * and reject the malformed separators the tree parser rejects.
+ */
+public class JsonReaderTest {
+    @Test
+    public void reader_matchesGeneratedDocuments() throws Json.ParsingException {
+        Random random = new Random(2);
+        for (int round = 0; round < 500; round++) {
+            Object expected = JsonTest.randomValue(random, 0);
+            String text = JsonTest.write(expected, random);
+            Json.Reader reader = new Json.Reader(text);
+            assertEquals(text, expected, read(reader));
+            assertEquals(text, Json.Reader.Token.End, reader.peek());
+        }
+    }
+
+    @Test
+    public void skipValue_skipsNestedValuesWhole() throws Json.ParsingException {
+        Random random = new Random(3);
+        for (int round = 0; round < 300; round++) {
+            // Pick one member out of an object and skip all the others
+            LinkedHashMap<String, Object> object = new LinkedHashMap<>();
+            int size = 1 + random.nextInt(6);
+            for (int i = 0; i < size; i++) {
+                object.put("k" + i, JsonTest.randomValue(random, 1));
+            }
+            String wanted = "k" + random.nextInt(size);
+            String text = JsonTest.write(object, random);
+            Json.Reader reader = new Json.Reader(text);
+            Object found = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(wanted)) {
+                    found = read(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            assertEquals(text, object.get(wanted), found);
+        }
+    }
+
+    @Test
+    public void reader_readsEmptyInputAsEnd() {
+        assertEquals(Json.Reader.Token.End, new Json.Reader("").peek());
+        assertEquals(Json.Reader.Token.End, new Json.Reader(" \n ").peek());
+    }
+
+    @Test
+    public void reader_readsEmptyContainers() throws Json.ParsingException {
+        Json.Reader reader = new Json.Reader("{ \"a\": [ ], \"b\": { } }");
+        reader.beginObject();
+        assertTrue(reader.hasNext());
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertTrue(reader.hasNext());
+        assertEquals("b", reader.nextName());
+        reader.beginObject();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+    }
+
+    @Test
+    public void nextStrings_readsNullAsEmpty() throws Json.ParsingException {
+        Json.Reader reader = new Json.Reader("{\"a\": null, \"b\": [\"x\", 'y']}");
+        ArrayList<String> a = new ArrayList<>(), b = new ArrayList<>();
+        reader.beginObject();
+        reader.hasNext();
+        reader.nextName();
+        reader.nextStrings(a);
+        reader.hasNext();
+        reader.nextName();
+        reader.nextStrings(b);
+        reader.endObject();
+        assertTrue(a.isEmpty());
+        assertEquals(2, b.size());
+        assertEquals("y", b.get(1));
+    }
+
+    @Test
+    public void hasNext_acceptsTrailingComma() throws Json.ParsingException {
+        assertEquals(2, ((List<?>) read(new Json.Reader("[1, 2,]"))).size());
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void hasNext_rejectsLeadingComma() throws Json.ParsingException {
+        read(new Json.Reader("[,1]"));
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void hasNext_rejectsLoneComma() throws Json.ParsingException {
+        read(new Json.Reader("{ , }"));
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void hasNext_rejectsMissingComma() throws Json.ParsingException {
+        read(new Json.Reader("[1 2]"));
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void nextString_rejectsContainer() throws Json.ParsingException {
+        new Json.Reader("[1]").nextString();
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void skipValue_rejectsUnclosedContainer() throws Json.ParsingException {
+        new Json.Reader("{\"a\": [1, \"]\"").skipValue();
+    }
+
+    /**
+     * Reads the next value into strings, maps and lists, the same shapes the documents were written from.
+     */
+    private static Object read(Json.Reader reader) throws Json.ParsingException {
+        switch (reader.peek()) {
+            case BeginObject:
+                Map<String, Object> map = new LinkedHashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    map.put(name, read(reader));
+                }
+                reader.endObject();
+                return map;
+            case BeginArray:
+                List<Object> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    list.add(read(reader));
+                }
+                reader.endArray();
+                return list;
+            default:
+                return reader.nextString();
+        }
+    }
+}
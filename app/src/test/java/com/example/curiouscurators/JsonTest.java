@@ -0,0 +1,262 @@
+package com.example.curiouscurators;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the tree parser and its cursor: random documents are written out with random
+ * spacing, quoting and escapes, parsed back, and compared with the values they were written from.
+ */
+public class JsonTest {
+    // Characters that need escaping or that end a bare literal, mixed into generated strings
+    private static final String AWKWARD = "\"'\\\n\t,:{}[] \u00e9\u2019";
+
+    @Test
+    public void fromString_matchesGeneratedDocuments() throws Json.ParsingException {
+        Random random = new Random(1);
+        for (int round = 0; round < 500; round++) {
+            Object expected = randomValue(random, 0);
+            // The top level of a card line is always an object or an array
+            if (expected instanceof String) {
+                ArrayList<Object> wrapped = new ArrayList<>();
+                wrapped.add(expected);
+                expected = wrapped;
+            }
+            String text = write(expected, random);
+            assertMatches(text, expected, Json.fromString(text));
+        }
+    }
+
+    @Test
+    public void fromString_decodesEscapes() throws Json.ParsingException {
+        Json json = Json.fromString("{\"a\": \"x\\\"y\\\\z\\n\\u00e9\\/\", 'b': 'it\\'s'}");
+        assertEquals("x\"y\\z\n\u00e9/", json.get("a").value());
+        assertEquals("it's", json.get("b").value());
+    }
+
+    @Test
+    public void fromString_readsBareLiteralsInFull() throws Json.ParsingException {
+        Json json = Json.fromString("{hp: -120.5e3, ok: true, none: null}");
+        assertEquals("-120.5e3", json.get("hp").value());
+        assertEquals("true", json.get("ok").value());
+        assertEquals("null", json.get("none").value());
+    }
+
+    @Test
+    public void getAll_keepsIndexOrderPastTenElements() throws Json.ParsingException {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < 25; i++) {
+            text.append(i == 0 ? "" : ",").append(i);
+        }
+        Json json = Json.fromString(text.append("]").toString());
+        int i = 0;
+        for (Json element : json.getAll()) {
+            assertEquals(Integer.toString(i++), element.value());
+        }
+        assertEquals(25, i);
+    }
+
+    @Test
+    public void get_missingKeyIsEmpty() throws Json.ParsingException {
+        Json json = Json.fromString("{\"a\": {}}");
+        assertEquals("", json.get("b").value());
+        assertEquals("fallback", json.get("b").valueOrDefault("fallback"));
+        assertTrue(json.get("a").getAll().isEmpty());
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void fromString_rejectsEmptyInput() throws Json.ParsingException {
+        Json.fromString("");
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void fromString_rejectsWhitespaceOnly() throws Json.ParsingException {
+        Json.fromString(" \n\t ");
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void fromString_rejectsUnterminatedString() throws Json.ParsingException {
+        Json.fromString("{\"a\": \"open}");
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void fromString_rejectsMissingColon() throws Json.ParsingException {
+        Json.fromString("{\"a\" 1}");
+    }
+
+    @Test(expected = Json.ParsingException.class)
+    public void fromString_rejectsUnclosedArray() throws Json.ParsingException {
+        Json.fromString("[1, [2, 3]");
+    }
+
+    @Test
+    public void cursor_stopsLiteralsAtDelimiters() throws Json.ParsingException {
+        Json.Cursor cursor = new Json.Cursor("abc,def]  \"g\\\"h\"");
+        assertEquals("abc", cursor.parseString());
+        assertTrue(cursor.parseChar(','));
+        assertFalse(cursor.parseChar(','));
+        assertEquals("def", cursor.parseString());
+        assertTrue(cursor.parseChar(']'));
+        cursor.parseWhitespace();
+        assertEquals("g\"h", cursor.parseString());
+        assertTrue(cursor.atEnd());
+        assertEquals("", cursor.remainder());
+    }
+
+    /**
+     * Checks a parsed value against the value it was written from.
+     */
+    @SuppressWarnings("unchecked")
+    static void assertMatches(String text, Object expected, Json actual) {
+        if (expected instanceof String) {
+            assertEquals(text, expected, actual.value());
+        } else if (expected instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) expected;
+            assertEquals(text, map.size(), actual.getAll().size());
+            for (Map.Entry<String, Object> member : map.entrySet()) {
+                assertMatches(text, member.getValue(), actual.get(member.getKey()));
+            }
+        } else {
+            List<Object> list = (List<Object>) expected;
+            assertEquals(text, list.size(), actual.getAll().size());
+            Iterator<Json> elements = actual.getAll().iterator();
+            for (Object element : list) {
+                assertMatches(text, element, elements.next());
+            }
+        }
+    }
+
+    /**
+     * Generates a random value: a string, a map of unique keys or a list, nested a few levels deep.
+     */
+    static Object randomValue(Random random, int depth) {
+        int kind = depth >= 4 ? 0 : random.nextInt(3);
+        if (kind == 0) {
+            return randomString(random);
+        }
+        int size = random.nextInt(random.nextInt(4) == 0 ? 14 : 4);
+        if (kind == 1) {
+            LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put("k" + i + randomString(random), randomValue(random, depth + 1));
+            }
+            return map;
+        }
+        ArrayList<Object> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(randomValue(random, depth + 1));
+        }
+        return list;
+    }
+
+    /**
+     * Generates a string that may be empty, a number-like literal, or full of awkward characters.
+     */
+    static String randomString(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return "";
+            case 1:
+                return Integer.toString(random.nextInt(2001) - 1000);
+            default:
+                StringBuilder value = new StringBuilder();
+                int length = random.nextInt(8);
+                for (int i = 0; i < length; i++) {
+                    value.append(random.nextBoolean()
+                            ? (char) ('a' + random.nextInt(26))
+                            : AWKWARD.charAt(random.nextInt(AWKWARD.length())));
+                }
+                return value.toString();
+        }
+    }
+
+    /**
+     * Writes a value as JSON with random whitespace, quotes and escapes.
+     */
+    static String write(Object value, Random random) {
+        StringBuilder out = new StringBuilder();
+        write(value, random, out);
+        return out.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void write(Object value, Random random, StringBuilder out) {
+        if (value instanceof String) {
+            writeString((String) value, random, out);
+        } else if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<String, Object> member : ((Map<String, Object>) value).entrySet()) {
+                out.append(first ? "" : ",").append(space(random));
+                writeQuoted(member.getKey(), random, out);
+                out.append(space(random)).append(':').append(space(random));
+                write(member.getValue(), random, out);
+                out.append(space(random));
+                first = false;
+            }
+            out.append('}');
+        } else {
+            out.append('[').append(space(random));
+            boolean first = true;
+            for (Object element : (List<Object>) value) {
+                out.append(first ? "" : ",").append(space(random));
+                write(element, random, out);
+                out.append(space(random));
+                first = false;
+            }
+            out.append(']');
+        }
+    }
+
+    private static void writeString(String value, Random random, StringBuilder out) {
+        // Plain literals may go unquoted, as numbers, true and null do
+        boolean bare = !value.isEmpty() && random.nextBoolean();
+        for (int i = 0; i < value.length() && bare; i++) {
+            bare = Character.isLetterOrDigit(value.charAt(i)) || value.charAt(i) == '-';
+        }
+        if (bare) {
+            out.append(value);
+        } else {
+            writeQuoted(value, random, out);
+        }
+    }
+
+    private static void writeQuoted(String value, Random random, StringBuilder out) {
+        char quote = random.nextInt(4) == 0 ? '\'' : '"';
+        out.append(quote);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == quote || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c == '\t') {
+                out.append(random.nextBoolean() ? "\\t" : "\\u0009");
+            } else if (c > 127 && random.nextBoolean()) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append(quote);
+    }
+
+    private static String space(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return " ";
+            case 1:
+                return "\n\t ";
+            default:
+                return "";
+        }
+    }
+}
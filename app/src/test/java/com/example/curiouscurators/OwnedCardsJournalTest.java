@@ -0,0 +1,112 @@
+package com.example.curiouscurators;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the owned card journal: a replay must keep every complete record and drop a record
+ * cut short by a crash, without letting it run into the records appended afterwards.
+ */
+public class OwnedCardsJournalTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory("journal").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    @Test
+    public void replay_appliesCompleteRecords() {
+        OwnedCardsJournal journal = new OwnedCardsJournal(this.directory);
+        assertEquals(new HashSet<String>(), journal.replay());
+        journal.record(changes("+base1-4", "+base1-58", "+sv1-1"), set("base1-4", "base1-58", "sv1-1"));
+        journal.record(changes("-base1-58"), set("base1-4", "sv1-1"));
+        journal.close();
+        assertEquals(set("base1-4", "sv1-1"), new OwnedCardsJournal(this.directory).replay());
+    }
+
+    @Test
+    public void replay_dropsTornLastRecord() throws IOException {
+        OwnedCardsJournal journal = new OwnedCardsJournal(this.directory);
+        journal.replay();
+        journal.record(changes("+base1-4", "+base1-58"), set("base1-4", "base1-58"));
+        journal.close();
+        // A crash in the middle of the next append leaves half a record with no newline
+        append("-base1-4\n+sv1");
+        journal = new OwnedCardsJournal(this.directory);
+        assertEquals(set("base1-58"), journal.replay());
+        assertEquals("+base1-4\n+base1-58\n-base1-4\n", read());
+
+        // Records appended after the replay start on a line of their own
+        journal.record(changes("+sv1-2"), set("base1-58", "sv1-2"));
+        journal.close();
+        assertEquals(set("base1-58", "sv1-2"), new OwnedCardsJournal(this.directory).replay());
+    }
+
+    @Test
+    public void replay_dropsTornOnlyRecord() throws IOException {
+        append("+base");
+        OwnedCardsJournal journal = new OwnedCardsJournal(this.directory);
+        assertEquals(new HashSet<String>(), journal.replay());
+        assertEquals("", read());
+    }
+
+    @Test
+    public void replay_appliesJournalOverSnapshot() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(new File(this.directory, OwnedCardsJournal.SNAPSHOT))) {
+            out.write("base1-4,base1-58\n".getBytes(StandardCharsets.UTF_8));
+        }
+        // Adding a card the snapshot already has changes nothing, so a replay after a compaction is harmless
+        append("+base1-4\n-base1-58\n+sv1-1\n-sv1");
+        assertEquals(set("base1-4", "sv1-1"), new OwnedCardsJournal(this.directory).replay());
+    }
+
+    private void append(String text) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(new File(this.directory, OwnedCardsJournal.JOURNAL), true)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(new File(this.directory, OwnedCardsJournal.JOURNAL).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses {@code +id} and {@code -id} records into ordered changes.
+     */
+    private static LinkedHashMap<String, Boolean> changes(String... records) {
+        LinkedHashMap<String, Boolean> changes = new LinkedHashMap<>();
+        for (String record : records) {
+            changes.put(record.substring(1), record.charAt(0) == '+');
+        }
+        return changes;
+    }
+
+    private static HashSet<String> set(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+}
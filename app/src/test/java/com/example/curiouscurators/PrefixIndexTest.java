@@ -0,0 +1,115 @@
+package com.example.curiouscurators;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the prefix trie: every lookup must return the same run of the sort index as a linear
+ * scan for the keys that start with the prefix.
+ */
+public class PrefixIndexTest {
+    // Few letters, so keys share long prefixes and repeat; one is outside Latin-1
+    private static final String ALPHABET = "ab -\u00e9\u2019";
+
+    @Test
+    public void find_matchesLinearScan() {
+        Random random = new Random(4);
+        for (int round = 0; round < 200; round++) {
+            String[] keys = randomKeys(random, random.nextInt(60));
+            int[] sorted = CardStore.sortedBy(keys, false);
+            PrefixIndex index = new PrefixIndex(keys, sorted);
+            for (int query = 0; query < 50; query++) {
+                String prefix = randomKey(random, 5);
+                assertRange(keys, sorted, prefix, index.find(prefix));
+            }
+            // Every prefix of every key, including the whole of the last key in sort order
+            for (String key : keys) {
+                for (int length = 0; length <= key.length(); length++) {
+                    assertRange(keys, sorted, key.substring(0, length), index.find(key.substring(0, length)));
+                }
+                assertRange(keys, sorted, key + "a", index.find(key + "a"));
+            }
+        }
+    }
+
+    @Test
+    public void find_onEmptyIndexMatchesNothing() {
+        PrefixIndex index = new PrefixIndex(new String[0], new int[0]);
+        assertEquals(PrefixIndex.range(0, 0), index.find(""));
+        assertEquals(PrefixIndex.range(0, 0), index.find("a"));
+    }
+
+    @Test
+    public void find_emptyPrefixMatchesEverything() {
+        String[] keys = {"charizard", "", "pikachu", "charmander"};
+        PrefixIndex index = new PrefixIndex(keys, CardStore.sortedBy(keys, false));
+        assertEquals(PrefixIndex.range(0, 4), index.find(""));
+    }
+
+    @Test
+    public void find_lastKeyInSortOrder() {
+        String[] keys = {"zubat", "abra", "zubat", "zu"};
+        int[] sorted = CardStore.sortedBy(keys, false);
+        PrefixIndex index = new PrefixIndex(keys, sorted);
+        // "zu" is a key of its own and the prefix of the two "zubat" cards that end the index
+        assertEquals(PrefixIndex.range(1, 4), index.find("zu"));
+        assertEquals(PrefixIndex.range(2, 4), index.find("zubat"));
+        assertEquals(PrefixIndex.range(0, 0), index.find("zubats"));
+    }
+
+    @Test
+    public void range_roundTrips() {
+        int[] values = {0, 1, 4096, Integer.MAX_VALUE};
+        for (int start : values) {
+            for (int end : values) {
+                long range = PrefixIndex.range(start, end);
+                assertEquals(start, PrefixIndex.start(range));
+                assertEquals(end, PrefixIndex.end(range));
+            }
+        }
+    }
+
+    /**
+     * Checks a found range against the sort positions whose keys start with the prefix.
+     */
+    private static void assertRange(String[] keys, int[] sorted, String prefix, long range) {
+        int start = -1, end = -1;
+        for (int position = 0; position < sorted.length; position++) {
+            if (keys[sorted[position]].startsWith(prefix)) {
+                if (start < 0) {
+                    start = position;
+                } else {
+                    assertEquals("matches must be contiguous for " + prefix, end, position);
+                }
+                end = position + 1;
+            }
+        }
+        if (start < 0) {
+            assertEquals("no match for " + prefix, PrefixIndex.start(range), PrefixIndex.end(range));
+        } else {
+            assertEquals("start of " + prefix, start, PrefixIndex.start(range));
+            assertEquals("end of " + prefix, end, PrefixIndex.end(range));
+        }
+    }
+
+    static String[] randomKeys(Random random, int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            // Reuse an earlier key now and then, so the index has runs of equal keys
+            keys[i] = i > 0 && random.nextInt(5) == 0 ? keys[random.nextInt(i)] : randomKey(random, 8);
+        }
+        return keys;
+    }
+
+    static String randomKey(Random random, int maxLength) {
+        StringBuilder key = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            key.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return key.toString();
+    }
+}
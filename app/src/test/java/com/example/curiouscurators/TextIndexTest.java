@@ -0,0 +1,208 @@
+package com.example.curiouscurators;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the card text index: every lookup must return the same cards as scanning the words of
+ * every text, in the order of BM25 scores computed directly from the word counts.
+ */
+public class TextIndexTest {
+    // Card words, with stop words, a shared prefix, an apostrophe and a non-ASCII letter
+    private static final String[] WORDS = {
+            "attach", "attack", "attacks", "energy", "draw", "card", "cards", "opponent\u2019s",
+            "Pok\u00e9mon", "damage", "heads", "discard", "30", "a", "the", "to", "your", "zubat"};
+    private static final String[] SEPARATORS = {" ", " ", ", ", ". ", "\n", " - "};
+    private static final double K1 = 1.2, B = 0.75;
+
+    @Test
+    public void find_matchesLinearScan() {
+        Random random = new Random(10);
+        for (int round = 0; round < 100; round++) {
+            String[] texts = new String[random.nextInt(80)];
+            for (int id = 0; id < texts.length; id++) {
+                texts[id] = randomText(random, random.nextInt(25));
+            }
+            TextIndex index = new TextIndex(texts);
+            for (int query = 0; query < 30; query++) {
+                String text = randomText(random, 1 + random.nextInt(3));
+                if (random.nextBoolean()) {
+                    // Cut the last word short, as while typing
+                    text = text.substring(0, text.length() - random.nextInt(Math.min(text.length(), 4)));
+                }
+                assertRanked(texts, text, index.find(text));
+            }
+        }
+    }
+
+    @Test
+    public void find_decodesMultiByteVarints() {
+        // Enough cards that gaps between them take two and three bytes, and one card that uses a
+        // word often enough for its count to take two bytes
+        String[] texts = new String[20000];
+        for (int id = 0; id < texts.length; id++) {
+            texts[id] = "card " + (id % 7) + " energy";
+        }
+        int[] rare = {0, 1, 200, 19999};
+        for (int id : rare) {
+            texts[id] += " rare";
+        }
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            repeated.append("damage ");
+        }
+        texts[17000] = repeated.toString();
+        texts[17001] = "damage energy";
+        TextIndex index = new TextIndex(texts);
+        int[] found = index.find("rare");
+        Arrays.sort(found);
+        assertArrayEquals(rare, found);
+        for (String query : new String[] {"rare", "damage", "energy rare", "card 3", "ene", "card"}) {
+            assertRanked(texts, query, index.find(query));
+        }
+        assertEquals(17001, index.find("damage")[1]);
+    }
+
+    @Test
+    public void find_prefixOfLastTerm() {
+        String[] texts = {"zubat bite", "abra teleport", "zubat zubat", "zu"};
+        TextIndex index = new TextIndex(texts);
+        // "zubat" sorts last of all terms, so its prefix range runs to the end of the term list
+        for (String query : new String[] {"z", "zu", "zub", "zubat", "zubats", "bite zu", "teleport zu"}) {
+            assertRanked(texts, query, index.find(query));
+        }
+        assertArrayEquals(new int[] {2, 0}, index.find("zubat"));
+        assertArrayEquals(new int[0], index.find("zubats"));
+    }
+
+    @Test
+    public void find_keepsStopWordAsLastWord() {
+        String[] texts = {"Attach an Energy card", "Draw a card", "the end"};
+        TextIndex index = new TextIndex(texts);
+        // "a" is left out of the texts, but as the last word it is the start of "attach"
+        assertArrayEquals(new int[] {0}, index.find("card a"));
+        assertArrayEquals(new int[] {0}, index.find("energy a"));
+        // A completed stop word is skipped, so "draw a card" needs only draw and card
+        assertArrayEquals(new int[] {1}, index.find("draw a card"));
+        assertArrayEquals(new int[0], index.find("the"));
+    }
+
+    @Test
+    public void find_onEmptyInputMatchesNothing() {
+        TextIndex empty = new TextIndex(new String[0]);
+        assertArrayEquals(new int[0], empty.find("energy"));
+        assertArrayEquals(new int[0], empty.find(""));
+        assertEquals(0, empty.termCount());
+        assertEquals(0, empty.postingBytes());
+        TextIndex index = new TextIndex(new String[] {"", "energy", "- -"});
+        assertArrayEquals(new int[0], index.find(""));
+        assertArrayEquals(new int[0], index.find(" , "));
+        assertArrayEquals(new int[] {1}, index.find("energy"));
+    }
+
+    @Test
+    public void tokenize_keepsApostrophesInWords() {
+        assertEquals(Arrays.asList("opponents", "active", "pok\u00e9mon"),
+                TextIndex.tokenize("Your opponent's Active Pok\u00e9mon."));
+        assertEquals(Arrays.asList("opponents"), TextIndex.tokenize("opponent\u2019s"));
+        assertEquals(Arrays.asList("draw", "a"), TextIndex.queryWords("draw a"));
+        assertEquals(Arrays.asList("draw", "card"), TextIndex.queryWords("draw a card"));
+    }
+
+    @Test
+    public void postingBytes_countsGapAndCountPairs() {
+        TextIndex index = new TextIndex(new String[] {"b and b", "b c"});
+        // Terms b and c; b is (1, 2) then (1, 1), c is (2, 1), one byte each
+        assertEquals(2, index.termCount());
+        assertEquals(6, index.postingBytes());
+    }
+
+    /**
+     * Checks found cards against the cards that have every query word, the last one as a prefix,
+     * and checks that they come in order of their BM25 scores.
+     */
+    private static void assertRanked(String[] texts, String query, int[] found) {
+        ArrayList<String> words = TextIndex.queryWords(query);
+        ArrayList<ArrayList<String>> tokens = new ArrayList<>();
+        TreeSet<String> terms = new TreeSet<>();
+        long total = 0;
+        for (String text : texts) {
+            ArrayList<String> textWords = TextIndex.tokenize(text);
+            tokens.add(textWords);
+            terms.addAll(textWords);
+            total += textWords.size();
+        }
+        double mean = Math.max((double) total / Math.max(texts.length, 1), 1);
+        ArrayList<Integer> expected = new ArrayList<>();
+        double[] scores = new double[texts.length];
+        for (int id = 0; id < texts.length && !words.isEmpty(); id++) {
+            boolean all = true;
+            for (int w = 0; w < words.size(); w++) {
+                boolean last = w == words.size() - 1;
+                boolean any = false;
+                for (String term : terms) {
+                    if (last ? !term.startsWith(words.get(w)) : !term.equals(words.get(w))) {
+                        continue;
+                    }
+                    int frequency = 0;
+                    for (ArrayList<String> other : tokens) {
+                        frequency += other.contains(term) ? 1 : 0;
+                    }
+                    int count = 0;
+                    for (String token : tokens.get(id)) {
+                        count += token.equals(term) ? 1 : 0;
+                    }
+                    if (count > 0) {
+                        double idf = Math.log(1 + (texts.length - frequency + 0.5) / (frequency + 0.5));
+                        double norm = K1 * (1 - B + B * tokens.get(id).size() / mean);
+                        scores[id] += idf * count * (K1 + 1) / (count + norm);
+                        any = true;
+                    }
+                }
+                all &= any;
+            }
+            if (all) {
+                expected.add(id);
+            }
+        }
+        int[] sortedFound = found.clone();
+        Arrays.sort(sortedFound);
+        int[] sortedExpected = new int[expected.size()];
+        for (int i = 0; i < sortedExpected.length; i++) {
+            sortedExpected[i] = expected.get(i);
+        }
+        assertArrayEquals(query, sortedExpected, sortedFound);
+        for (int i = 1; i < found.length; i++) {
+            double previous = scores[found[i - 1]], score = scores[found[i]];
+            assertTrue(query + " ranked by score", previous >= score - 1e-4);
+            // Cards with the same words score exactly the same, and keep catalog order
+            if (sameWords(tokens.get(found[i - 1]), tokens.get(found[i]))) {
+                assertTrue(query + " ties by id", found[i - 1] < found[i]);
+            }
+        }
+    }
+
+    private static boolean sameWords(ArrayList<String> a, ArrayList<String> b) {
+        String[] x = a.toArray(new String[0]), y = b.toArray(new String[0]);
+        Arrays.sort(x);
+        Arrays.sort(y);
+        return Arrays.equals(x, y);
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.curiouscurators;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the trigram index: every lookup must return the same cards, in sort index order,
+ * as a linear scan for the keys that contain the query.
+ */
+public class TrigramIndexTest {
+    @Test
+    public void find_matchesLinearScan() {
+        Random random = new Random(5);
+        for (int round = 0; round < 200; round++) {
+            String[] keys = PrefixIndexTest.randomKeys(random, random.nextInt(60));
+            int[] sorted = CardStore.sortedBy(keys, false);
+            TrigramIndex index = new TrigramIndex(keys, sorted);
+            // Short queries take the scan path, longer ones the posting lists
+            for (int query = 0; query < 50; query++) {
+                String substring = PrefixIndexTest.randomKey(random, 5);
+                assertArrayEquals(substring, scan(keys, sorted, substring), index.find(substring));
+            }
+            for (String key : keys) {
+                int from = key.isEmpty() ? 0 : random.nextInt(key.length());
+                String substring = key.substring(from, from + random.nextInt(key.length() - from + 1));
+                assertArrayEquals(substring, scan(keys, sorted, substring), index.find(substring));
+            }
+        }
+    }
+
+    @Test
+    public void find_decodesMultiByteGaps() {
+        // Tens of thousands of distinct keys, of which a few far apart share the trigrams of "qqq",
+        // so the gaps between their groups need one, two and three varint bytes
+        int count = 40000;
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = String.format("k%05d", i);
+        }
+        int[] planted = {0, 1, 100, 300, 20000, 39999};
+        for (int i : planted) {
+            keys[i] = keys[i] + "qqq";
+        }
+        int[] sorted = CardStore.sortedBy(keys, false);
+        TrigramIndex index = new TrigramIndex(keys, sorted);
+        assertArrayEquals(planted, index.find("qqq"));
+        assertArrayEquals(scan(keys, sorted, "0qqq"), index.find("0qqq"));
+        assertArrayEquals(new int[] {39999}, index.find("999qqq"));
+        // The same trigrams out of order must still be checked against the key
+        assertArrayEquals(new int[0], index.find("qqqk"));
+        for (String query : new String[] {"k00", "k3999", "99", "5", "k1234"}) {
+            assertArrayEquals(query, scan(keys, sorted, query), index.find(query));
+        }
+    }
+
+    @Test
+    public void find_onEmptyIndexMatchesNothing() {
+        TrigramIndex index = new TrigramIndex(new String[0], new int[0]);
+        assertArrayEquals(new int[0], index.find(""));
+        assertArrayEquals(new int[0], index.find("a"));
+        assertArrayEquals(new int[0], index.find("abc"));
+    }
+
+    @Test
+    public void find_emptyQueryMatchesEverything() {
+        String[] keys = {"raichu", "pikachu", ""};
+        int[] sorted = CardStore.sortedBy(keys, false);
+        assertArrayEquals(sorted, new TrigramIndex(keys, sorted).find(""));
+    }
+
+    @Test
+    public void find_repeatedTrigrams() {
+        String[] keys = {"aaaa", "aaa", "aa", "baaab"};
+        int[] sorted = CardStore.sortedBy(keys, false);
+        TrigramIndex index = new TrigramIndex(keys, sorted);
+        assertArrayEquals(scan(keys, sorted, "aaaa"), index.find("aaaa"));
+        assertArrayEquals(scan(keys, sorted, "aaa"), index.find("aaa"));
+    }
+
+    /**
+     * Lists the cards whose key contains a substring, in sort index order.
+     */
+    private static int[] scan(String[] keys, int[] sorted, String substring) {
+        int[] ids = new int[sorted.length];
+        int size = 0;
+        for (int id : sorted) {
+            if (keys[id].contains(substring)) {
+                ids[size++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+}